@@ -0,0 +1,79 @@
+package net.steppschuh.datalogger.messaging;
+
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.Message;
+import android.support.test.runner.AndroidJUnit4;
+
+import net.steppschuh.datalogger.messaging.handler.MessageHandler;
+import net.steppschuh.datalogger.messaging.handler.MessageHandlerRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class MessageProcessorTests {
+
+    @Before
+    public void prepareLooper() throws Exception {
+        // message handlers can only be created on threads with a looper
+        if (Looper.myLooper() == null) {
+            Looper.prepare();
+        }
+    }
+
+    private static Message createMessage(String path, String sourceNodeId, String data) {
+        Bundle bundle = new Bundle();
+        bundle.putString(MessageHandler.KEY_PATH, path);
+        bundle.putString(MessageHandler.KEY_SOURCE_NODE_ID, sourceNodeId);
+        bundle.putByteArray(MessageHandler.KEY_DATA, MessageHandler.getPayloadCompressor().compress(data.getBytes(GoogleApiMessenger.DEFAULT_CHARSET)));
+        Message message = new Message();
+        message.setData(bundle);
+        return message;
+    }
+
+    @Test
+    public void process_onMessagesFromSameNode() throws Exception {
+        final int messageCount = 100;
+        final CountDownLatch allMessagesHandled = new CountDownLatch(messageCount);
+        final List<String> handledMessages = Collections.synchronizedList(new ArrayList<String>());
+        final List<Thread> handlingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        MessageHandlerRegistry messageHandlerRegistry = new MessageHandlerRegistry();
+        messageHandlerRegistry.register(new MessageHandler(new MessageReceiver() {
+            @Override
+            public void onMessageReceived(Message message) {
+                handledMessages.add(MessageHandler.getDataFromMessageAsString(message));
+                handlingThreads.add(Thread.currentThread());
+                allMessagesHandled.countDown();
+            }
+        }));
+
+        MessageProcessor messageProcessor = new MessageProcessor(messageHandlerRegistry, 4);
+        List<String> expectedMessages = new ArrayList<>();
+        for (int messageIndex = 0; messageIndex < messageCount; messageIndex++) {
+            String path = messageIndex % 2 == 0 ? MessageHandler.PATH_PING : MessageHandler.PATH_ECHO;
+            messageProcessor.process(createMessage(path, "node", String.valueOf(messageIndex)));
+            expectedMessages.add(String.valueOf(messageIndex));
+        }
+
+        assertTrue(allMessagesHandled.await(1, TimeUnit.SECONDS));
+        assertEquals(expectedMessages, handledMessages);
+        assertEquals(1, new HashSet<>(handlingThreads).size());
+        assertFalse(handlingThreads.contains(Thread.currentThread()));
+        messageProcessor.shutdown();
+    }
+
+}
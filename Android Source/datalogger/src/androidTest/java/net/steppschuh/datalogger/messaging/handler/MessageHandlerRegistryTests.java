@@ -0,0 +1,71 @@
+package net.steppschuh.datalogger.messaging.handler;
+
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.Message;
+import android.support.test.runner.AndroidJUnit4;
+
+import net.steppschuh.datalogger.messaging.MessageReceiver;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class MessageHandlerRegistryTests {
+
+    @Before
+    public void prepareLooper() throws Exception {
+        // message handlers can only be created on threads with a looper
+        if (Looper.myLooper() == null) {
+            Looper.prepare();
+        }
+    }
+
+    private static Message createMessage(String path) {
+        Bundle data = new Bundle();
+        data.putString(MessageHandler.KEY_PATH, path);
+        Message message = new Message();
+        message.setData(data);
+        return message;
+    }
+
+    private static MessageReceiver getMessageReceiver(final String name, final List<String> handledMessages) {
+        return new MessageReceiver() {
+            @Override
+            public void onMessageReceived(Message message) {
+                handledMessages.add(name + MessageHandler.getPathFromMessage(message));
+            }
+        };
+    }
+
+    @Test
+    public void dispatch_onRegisteredPaths() throws Exception {
+        List<String> handledMessages = new ArrayList<>();
+        MessageHandler pingMessageHandler = new MessageHandler(MessageHandler.PATH_PING, getMessageReceiver("ping", handledMessages));
+        MessageHandler anyMessageHandler = new MessageHandler(getMessageReceiver("any", handledMessages));
+
+        MessageHandlerRegistry messageHandlerRegistry = new MessageHandlerRegistry();
+        messageHandlerRegistry.register(pingMessageHandler);
+        messageHandlerRegistry.register(anyMessageHandler);
+        assertEquals(2, messageHandlerRegistry.dispatch(createMessage(MessageHandler.PATH_PING)));
+        assertEquals(1, messageHandlerRegistry.dispatch(createMessage(MessageHandler.PATH_ECHO)));
+        assertEquals("[ping/ping, any/ping, any/echo]", handledMessages.toString());
+        assertEquals(1, messageHandlerRegistry.getDispatchCount(MessageHandler.PATH_PING));
+        assertEquals(1, messageHandlerRegistry.getDispatchCount(MessageHandler.PATH_ANY));
+        assertEquals(0, messageHandlerRegistry.getUnmatchedMessageCount(MessageHandler.PATH_PING));
+        assertEquals(1, messageHandlerRegistry.getUnmatchedMessageCount(MessageHandler.PATH_ECHO));
+
+        messageHandlerRegistry.unregister(anyMessageHandler);
+        assertEquals(0, messageHandlerRegistry.dispatch(createMessage(MessageHandler.PATH_ECHO)));
+        assertEquals(3, messageHandlerRegistry.getDispatchedMessageCount());
+        assertEquals(2, messageHandlerRegistry.getUnmatchedMessageCount(MessageHandler.PATH_ECHO));
+        assertEquals(2, messageHandlerRegistry.getUnmatchedMessageCount());
+    }
+
+}
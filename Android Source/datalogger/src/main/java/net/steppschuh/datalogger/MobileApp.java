@@ -1,7 +1,5 @@
 package net.steppschuh.datalogger;
 
-import com.google.android.gms.wearable.MessageApi;
-import com.google.android.gms.wearable.MessageEvent;
 import com.google.firebase.analytics.FirebaseAnalytics;
 
 import android.app.Activity;
@@ -10,24 +8,28 @@ import android.os.Message;
 import android.support.multidex.MultiDexApplication;
 import android.util.Log;
 
+import net.steppschuh.datalogger.data.MemoryBudget;
 import net.steppschuh.datalogger.logging.TrackerManager;
 import net.steppschuh.datalogger.messaging.GoogleApiMessenger;
+import net.steppschuh.datalogger.messaging.MessageProcessor;
 import net.steppschuh.datalogger.messaging.ReachabilityChecker;
+import net.steppschuh.datalogger.messaging.Transport;
 import net.steppschuh.datalogger.messaging.handler.GetAvailableSensorsMessageHandler;
 import net.steppschuh.datalogger.messaging.handler.GetStatusMessageHandler;
 import net.steppschuh.datalogger.messaging.handler.MessageHandler;
+import net.steppschuh.datalogger.messaging.handler.MessageHandlerRegistry;
 import net.steppschuh.datalogger.messaging.handler.SensorDataRequestMessageHandler;
 import net.steppschuh.datalogger.sensor.SensorDataManager;
 import net.steppschuh.datalogger.status.AppStatus;
+import net.steppschuh.datalogger.status.MemoryStatus;
 import net.steppschuh.datalogger.status.Status;
 import net.steppschuh.datalogger.status.StatusUpdateEmitter;
 import net.steppschuh.datalogger.status.StatusUpdateHandler;
 import net.steppschuh.datalogger.status.StatusUpdateReceiver;
 
-import java.util.ArrayList;
 import java.util.List;
 
-public class MobileApp extends MultiDexApplication implements MessageApi.MessageListener, StatusUpdateEmitter {
+public class MobileApp extends MultiDexApplication implements Transport.MessageListener, StatusUpdateEmitter {
 
     public static final String TAG = "DataLogger";
 
@@ -37,9 +39,11 @@ public class MobileApp extends MultiDexApplication implements MessageApi.Message
     private Activity contextActivity;
 
     private GoogleApiMessenger googleApiMessenger;
-    List<MessageHandler> messageHandlers;
+    private MessageHandlerRegistry messageHandlerRegistry;
+    private MessageProcessor messageProcessor;
 
     private TrackerManager trackerManager;
+    private MemoryBudget memoryBudget;
     private SensorDataManager sensorDataManager;
     private ReachabilityChecker reachabilityChecker;
     private FirebaseAnalytics analytics;
@@ -52,6 +56,7 @@ public class MobileApp extends MultiDexApplication implements MessageApi.Message
         setupGoogleApis();
         setupTrackingManager();
         setupMessageHandlers();
+        setupMemoryBudget();
         setupSensorDataManager();
         setupReachabilityChecker();
 
@@ -70,7 +75,11 @@ public class MobileApp extends MultiDexApplication implements MessageApi.Message
 
     private void setupGoogleApis() {
         Log.d(TAG, "Setting up Google APIs");
+        if (googleApiMessenger != null) {
+            googleApiMessenger.shutdown();
+        }
         googleApiMessenger = new GoogleApiMessenger(this);
+        googleApiMessenger.setReceivedMessageListener(this);
         googleApiMessenger.connect();
     }
 
@@ -81,15 +90,34 @@ public class MobileApp extends MultiDexApplication implements MessageApi.Message
 
     private void setupMessageHandlers() {
         Log.d(TAG, "Setting up Message handlers");
-        messageHandlers = new ArrayList<>();
+        if (messageProcessor != null) {
+            messageProcessor.shutdown();
+        }
+        messageHandlerRegistry = new MessageHandlerRegistry();
+        messageProcessor = new MessageProcessor(messageHandlerRegistry);
         registerMessageHandler(new GetStatusMessageHandler(this));
         registerMessageHandler(new SensorDataRequestMessageHandler(this));
         registerMessageHandler(new GetAvailableSensorsMessageHandler(this));
     }
 
+    private void setupMemoryBudget() {
+        Log.d(TAG, "Setting up Memory budget");
+        memoryBudget = new MemoryBudget();
+        memoryBudget.getStatusUpdateHandler().registerStatusUpdateReceiver(new StatusUpdateReceiver() {
+            @Override
+            public void onStatusUpdated(Status status) {
+                MobileApp.this.status.setMemoryStatus((MemoryStatus) status);
+            }
+        });
+        memoryBudget.startRebalancing();
+    }
+
     private void setupSensorDataManager() {
         Log.d(TAG, "Setting up Sensor Data manager");
-        sensorDataManager = new SensorDataManager(this);
+        if (sensorDataManager != null) {
+            sensorDataManager.shutdown();
+        }
+        sensorDataManager = new SensorDataManager(this, memoryBudget);
     }
 
     private void setupReachabilityChecker() {
@@ -105,57 +133,33 @@ public class MobileApp extends MultiDexApplication implements MessageApi.Message
     }
 
     public boolean registerMessageHandler(MessageHandler messageHandler) {
-        if (!messageHandlers.contains(messageHandler)) {
-            return messageHandlers.add(messageHandler);
-        }
-        return false;
+        return messageHandlerRegistry.register(messageHandler);
     }
 
     public boolean unregisterMessageHandler(MessageHandler messageHandler) {
-        if (messageHandlers.contains(messageHandler)) {
-            return messageHandlers.remove(messageHandler);
-        }
-        return false;
+        return messageHandlerRegistry.unregister(messageHandler);
     }
 
     public void notifyMessageHandlers(Message message) {
-        int matchingHandlersCount = 0;
-        String path = MessageHandler.getPathFromMessage(message);
-
-        // create new list to avoid concurrent modification
-        List<MessageHandler> currentMessageHandlers = new ArrayList<>(messageHandlers);
-        for (MessageHandler messageHandler : currentMessageHandlers) {
-            try {
-                if (messageHandler.shouldHandleMessage(path)) {
-                    messageHandler.handleMessage(message);
-                    matchingHandlersCount += 1;
-                }
-            } catch (Exception ex) {
-                Log.w(TAG, "Message handler is unable to handle message: " + ex.getMessage());
-                ex.printStackTrace();
-            }
-        }
-        if (matchingHandlersCount == 0) {
-            Log.w(TAG, "No message handler available that can handle message: " + path);
-        }
+        messageHandlerRegistry.dispatch(message);
     }
 
     /**
-     * Will be called from the Message API if a connected Google API node
-     * sent a message to this device
+     * Will be called from the @TransportMessenger of the @GoogleApiMessenger
+     * if another node or this device sent a message to this device
      */
     @Override
-    public void onMessageReceived(MessageEvent messageEvent) {
-        // convert MessageEvent to data bundle
+    public void onMessageReceived(String path, byte[] payload, String sourceNodeId) {
+        // convert message to data bundle
         Bundle data = new Bundle();
-        data.putString(MessageHandler.KEY_PATH, messageEvent.getPath());
-        data.putString(MessageHandler.KEY_SOURCE_NODE_ID, messageEvent.getSourceNodeId());
-        data.putByteArray(MessageHandler.KEY_DATA, messageEvent.getData());
+        data.putString(MessageHandler.KEY_PATH, path);
+        data.putString(MessageHandler.KEY_SOURCE_NODE_ID, sourceNodeId);
+        data.putByteArray(MessageHandler.KEY_DATA, payload);
 
-        // forward message to handlers
+        // forward message to handlers, off the calling thread
         Message message = new Message();
         message.setData(data);
-        notifyMessageHandlers(message);
+        messageProcessor.process(message);
     }
 
     /**
@@ -191,11 +195,15 @@ public class MobileApp extends MultiDexApplication implements MessageApi.Message
     }
 
     public List<MessageHandler> getMessageHandlers() {
-        return messageHandlers;
+        return messageHandlerRegistry.getMessageHandlers();
+    }
+
+    public MessageHandlerRegistry getMessageHandlerRegistry() {
+        return messageHandlerRegistry;
     }
 
-    public void setMessageHandlers(List<MessageHandler> messageHandlers) {
-        this.messageHandlers = messageHandlers;
+    public MessageProcessor getMessageProcessor() {
+        return messageProcessor;
     }
 
     public TrackerManager getTrackerManager() {
@@ -206,6 +214,14 @@ public class MobileApp extends MultiDexApplication implements MessageApi.Message
         this.trackerManager = trackerManager;
     }
 
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
     public SensorDataManager getSensorDataManager() {
         return sensorDataManager;
     }
@@ -0,0 +1,311 @@
+package net.steppschuh.datalogger.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of @DataBatch and @Data instances, used instead of
+ * JSON when sending sensor data to another device. All primitives are
+ * little-endian, strings are prefixed with their length in bytes.
+ *
+ * Batches start with the sample encoding (byte). If @FLAG_SOURCE_ID_ONLY is set,
+ * the source has been sent as part of a @SessionSchema and only the source id
+ * (varint) follows. Otherwise type (int), source id (int), capacity (int) and
+ * source (string) follow. With @ENCODING_RAW, samples are encoded column by
+ * column: dimensions (byte), sample count (int), timestamps (long each),
+ * followed by the values of each dimension (float each). With
+ * @ENCODING_TIME_SERIES, samples are compressed by the @TimeSeriesCodec. With
+ * @ENCODING_QUANTIZED, values are encoded by the @QuantizedCodec as multiples of
+ * the value scale of the batch.
+ *
+ * Encoded messages start with @MAGIC and a @VERSION byte, see writeHeader().
+ * Version 1 didn't contain the sample encoding and the update interval of
+ * responses, its samples always use @ENCODING_RAW.
+ */
+public abstract class BinaryDataCodec {
+
+    public static final Charset CHARSET = Charset.forName("UTF-8");
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final byte[] MAGIC = new byte[]{'S', 'D'};
+    public static final byte VERSION = 2;
+    public static final int HEADER_SIZE = MAGIC.length + 1;
+
+    public static final byte ENCODING_RAW = 0;
+    public static final byte ENCODING_TIME_SERIES = 1;
+    public static final byte ENCODING_QUANTIZED = 2;
+    public static final byte FLAG_SOURCE_ID_ONLY = (byte) 0x80;
+
+    private static final short STRING_NULL = -1;
+
+    /**
+     * Creates a little-endian buffer with the specified size
+     */
+    public static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(BYTE_ORDER);
+    }
+
+    /**
+     * Wraps the specified bytes in a little-endian buffer
+     */
+    public static ByteBuffer wrap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(BYTE_ORDER);
+    }
+
+    /**
+     * Returns true if the specified bytes start with the header
+     * of a binary message, JSON messages never do
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && isEncoded(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Returns true if the remaining bytes of the specified buffer start with
+     * the header of a binary message, without changing its position
+     */
+    public static boolean isEncoded(ByteBuffer buffer) {
+        if (buffer == null || buffer.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        for (int index = 0; index < MAGIC.length; index++) {
+            if (buffer.get(buffer.position() + index) != MAGIC[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void writeHeader(ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+    }
+
+    /**
+     * Reads and validates the header, returns the version of the message
+     */
+    public static byte readHeader(ByteBuffer buffer) throws Exception {
+        for (byte magic : MAGIC) {
+            if (buffer.get() != magic) {
+                throw new Exception("Invalid binary message header");
+            }
+        }
+        byte version = buffer.get();
+        if (version > VERSION) {
+            throw new Exception("Unsupported binary message version: " + version);
+        }
+        return version;
+    }
+
+    /**
+     * Data batch encoding. Returns the amount of bytes that encoding the batch
+     * takes in the worst case, which is the exact size for @ENCODING_RAW.
+     */
+    public static int getMaximumEncodedSize(DataBatch dataBatch, byte encoding) {
+        int size = 4 + 4 + 4 + getEncodedSize(dataBatch.getSource()) + 1;
+        if (encoding == ENCODING_QUANTIZED) {
+            // falls back to the time series encoding if values can't be quantized
+            size += Math.max(QuantizedCodec.getMaximumEncodedSize(dataBatch.getSize(), dataBatch.getDimensions()),
+                    TimeSeriesCodec.getMaximumEncodedSize(dataBatch.getSize(), dataBatch.getDimensions()));
+        } else if (encoding == ENCODING_TIME_SERIES) {
+            size += TimeSeriesCodec.getMaximumEncodedSize(dataBatch.getSize(), dataBatch.getDimensions());
+        } else {
+            size += 1 + 4 + dataBatch.getSize() * (8 + 4 * dataBatch.getDimensions());
+        }
+        return size;
+    }
+
+    public static void writeDataBatch(ByteBuffer buffer, DataBatch dataBatch, byte encoding) {
+        if (encoding == ENCODING_QUANTIZED && !QuantizedCodec.canEncode(dataBatch, dataBatch.getValueScale())) {
+            encoding = ENCODING_TIME_SERIES;
+        }
+        if (isSourceIdOnly(dataBatch)) {
+            buffer.put((byte) (encoding | FLAG_SOURCE_ID_ONLY));
+            TimeSeriesCodec.writeVarLong(buffer, dataBatch.getSourceId());
+        } else {
+            buffer.put(encoding);
+            buffer.putInt(dataBatch.getType());
+            buffer.putInt(dataBatch.getSourceId());
+            buffer.putInt(dataBatch.getCapacity());
+            writeString(buffer, dataBatch.getSource());
+        }
+        if (encoding == ENCODING_QUANTIZED) {
+            QuantizedCodec.writeSamples(buffer, dataBatch, dataBatch.getValueScale());
+        } else if (encoding == ENCODING_TIME_SERIES) {
+            TimeSeriesCodec.writeSamples(buffer, dataBatch);
+        } else {
+            writeRawSamples(buffer, dataBatch);
+        }
+    }
+
+    /**
+     * Returns true if the batch references its source by id only, which means
+     * that the receiver resolves type and name using the @SessionSchema
+     */
+    private static boolean isSourceIdOnly(DataBatch dataBatch) {
+        return dataBatch.getSource() == null && dataBatch.getSourceId() != SessionSchema.SOURCE_ID_NOT_SET;
+    }
+
+    private static void writeRawSamples(ByteBuffer buffer, DataBatch dataBatch) {
+        int size = dataBatch.getSize();
+        int dimensions = dataBatch.getDimensions();
+        buffer.put((byte) dimensions);
+        buffer.putInt(size);
+        for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+            buffer.putLong(dataBatch.getTimestamp(dataIndex));
+        }
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+                buffer.putFloat(dataBatch.getValue(dataIndex, dimension));
+            }
+        }
+    }
+
+    /**
+     * Reads a batch that has been written by a codec of the specified version
+     */
+    public static DataBatch readDataBatch(ByteBuffer buffer, byte version) throws Exception {
+        DataBatch dataBatch = new DataBatch();
+        byte encoding = readDataBatchHeader(buffer, version, dataBatch);
+        readSamples(buffer, dataBatch, encoding);
+        return dataBatch;
+    }
+
+    /**
+     * Reads everything but the samples of a batch into the specified batch.
+     * Returns the sample encoding, which is needed to read the samples that follow.
+     */
+    public static byte readDataBatchHeader(ByteBuffer buffer, byte version, DataBatch dataBatch) throws BufferUnderflowException {
+        byte encoding = version >= 2 ? buffer.get() : ENCODING_RAW;
+        if ((encoding & FLAG_SOURCE_ID_ONLY) != 0) {
+            encoding &= ~FLAG_SOURCE_ID_ONLY;
+            dataBatch.setSourceId((int) TimeSeriesCodec.readVarLong(buffer));
+            dataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+        } else {
+            dataBatch.setType(buffer.getInt());
+            dataBatch.setSourceId(buffer.getInt());
+            dataBatch.setCapacity(buffer.getInt());
+            dataBatch.setSource(readString(buffer));
+        }
+        return encoding;
+    }
+
+    /**
+     * Decodes the samples and appends them to the specified batch
+     */
+    public static void readSamples(ByteBuffer buffer, DataBatch dataBatch, byte encoding) throws Exception {
+        if (encoding == ENCODING_QUANTIZED) {
+            QuantizedCodec.readSamples(buffer, dataBatch);
+        } else if (encoding == ENCODING_TIME_SERIES) {
+            TimeSeriesCodec.readSamples(buffer, dataBatch);
+        } else if (encoding == ENCODING_RAW) {
+            readRawSamples(buffer, dataBatch);
+        } else {
+            throw new Exception("Unsupported sample encoding: " + encoding);
+        }
+    }
+
+    /**
+     * Returns the amount of samples without reading them. All sample encodings
+     * start with the dimensions (byte) followed by the sample count (int).
+     */
+    public static int peekSampleCount(ByteBuffer buffer) throws IndexOutOfBoundsException {
+        return buffer.getInt(buffer.position() + 1);
+    }
+
+    private static void readRawSamples(ByteBuffer buffer, DataBatch dataBatch) throws BufferUnderflowException {
+        int dimensions = buffer.get() & 0xFF;
+        int size = buffer.getInt();
+
+        // values are stored column by column, so read them by absolute position
+        int timestampsPosition = buffer.position();
+        int valuesPosition = timestampsPosition + size * 8;
+        float[] values = new float[dimensions];
+        for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+            long timestamp = buffer.getLong(timestampsPosition + dataIndex * 8);
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                values[dimension] = buffer.getFloat(valuesPosition + (dimension * size + dataIndex) * 4);
+            }
+            dataBatch.addData(timestamp, values);
+        }
+        buffer.position(valuesPosition + dimensions * size * 4);
+    }
+
+    public static byte[] encode(DataBatch dataBatch, byte encoding) {
+        ByteBuffer buffer = allocate(HEADER_SIZE + getMaximumEncodedSize(dataBatch, encoding));
+        writeHeader(buffer);
+        writeDataBatch(buffer, dataBatch, encoding);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    public static DataBatch decodeDataBatch(byte[] bytes) throws Exception {
+        ByteBuffer buffer = wrap(bytes);
+        byte version = readHeader(buffer);
+        return readDataBatch(buffer, version);
+    }
+
+    /**
+     * Data encoding
+     */
+    public static int getEncodedSize(Data data) {
+        int dimensions = data.getValues() != null ? data.getValues().length : 0;
+        return 8 + getEncodedSize(data.getSource()) + 1 + 4 * dimensions;
+    }
+
+    public static void writeData(ByteBuffer buffer, Data data) {
+        float[] values = data.getValues();
+        int dimensions = values != null ? values.length : 0;
+        buffer.putLong(data.getTimestamp());
+        writeString(buffer, data.getSource());
+        buffer.put((byte) dimensions);
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            buffer.putFloat(values[dimension]);
+        }
+    }
+
+    public static Data readData(ByteBuffer buffer) throws BufferUnderflowException {
+        long timestamp = buffer.getLong();
+        String source = readString(buffer);
+        float[] values = new float[buffer.get() & 0xFF];
+        for (int dimension = 0; dimension < values.length; dimension++) {
+            values[dimension] = buffer.getFloat();
+        }
+        Data data = new Data(source, values);
+        data.setTimestamp(timestamp);
+        return data;
+    }
+
+    /**
+     * String encoding, null is encoded as length -1
+     */
+    public static int getEncodedSize(String value) {
+        if (value == null) {
+            return 2;
+        }
+        return 2 + value.getBytes(CHARSET).length;
+    }
+
+    public static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort(STRING_NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(CHARSET);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static String readString(ByteBuffer buffer) throws BufferUnderflowException {
+        short length = buffer.getShort();
+        if (length == STRING_NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+}
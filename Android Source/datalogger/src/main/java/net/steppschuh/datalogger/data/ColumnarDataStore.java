@@ -0,0 +1,396 @@
+package net.steppschuh.datalogger.data;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Primitive backing store for a @DataBatch. Instead of keeping one @Data object
+ * per sample, timestamps are stored in a single long column and the values of
+ * each dimension in a separate int column (as raw float bits), so appending a
+ * sample doesn't allocate any objects once the columns have been sized.
+ *
+ * The columns are used as a circular buffer. With a fixed capacity, appending
+ * to a full store overwrites the oldest sample, so both appending and evicting are O(1).
+ * Indices passed to the accessors are logical, 0 always refers to the oldest sample.
+ *
+ * Every appended sample also gets a sequence number, which keeps increasing even
+ * if samples get evicted. Readers can use it to find out which samples they haven't
+ * seen yet and how many samples have been overwritten before they could read them.
+ * The sample with the sequence number n is stored at the column index n % capacity.
+ *
+ * The store supports one writer thread and any number of reader threads without
+ * locking, similar to a seqlock: before a slot gets overwritten, the writer claims
+ * it by increasing @claimSequence and after the sample has been written, it gets
+ * published by increasing @writeSequence. Readers copy the published samples with
+ * readInto() and afterwards discard all samples whose slots have been claimed in
+ * the meantime. Column elements are written with lazySet() and read with get(),
+ * which keeps claiming, writing and validating in order without a full barrier
+ * for every element. Resizing publishes new columns, readers that still use the
+ * previous columns keep reading consistent data because they aren't written anymore.
+ *
+ * All modifying methods must be called from the writer thread. The index based
+ * accessors don't validate anything, other threads should use readInto().
+ */
+public class ColumnarDataStore implements Serializable {
+
+    public static final int CAPACITY_GROWABLE = -1;
+    public static final int INITIAL_CAPACITY_DEFAULT = 64;
+    public static final int DIMENSIONS_DEFAULT = 3;
+
+    private volatile Columns columns;
+    private volatile long oldestSequence;
+    private volatile long claimSequence;
+    private volatile long writeSequence;
+    private int capacity;
+
+    public ColumnarDataStore() {
+        this(CAPACITY_GROWABLE);
+    }
+
+    /**
+     * Creates a store that holds up to @capacity samples. The columns will be
+     * allocated when the first sample is appended.
+     */
+    public ColumnarDataStore(int capacity) {
+        columns = new Columns(0, 0, 0);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a consistent copy of the specified store, which may
+     * be modified by another thread in the meantime
+     */
+    public ColumnarDataStore(ColumnarDataStore store) {
+        this(store.capacity);
+        store.readInto(this, store.getOldestSequence());
+    }
+
+    /**
+     * Appends a sample by copying the specified values into the value columns.
+     * The passed array is not referenced afterwards and can be re-used by the caller.
+     * If the store has reached its fixed capacity, the oldest sample gets overwritten.
+     */
+    public void append(long timestamp, float[] sampleValues) {
+        int sampleDimensions = sampleValues != null ? sampleValues.length : 0;
+        long sequence = writeSequence;
+        Columns columns = this.columns;
+        if (sampleDimensions > columns.getDimensions() || size() == columns.getCapacity()) {
+            columns = ensureColumns(sampleDimensions);
+            if (columns == null) {
+                return;
+            }
+        }
+
+        if (sequence - oldestSequence == columns.getCapacity()) {
+            // overwrite the oldest sample
+            oldestSequence = sequence - columns.getCapacity() + 1;
+        }
+
+        claimSequence = sequence + 1;
+        int columnIndex = columns.getColumnIndex(sequence);
+        columns.timestamps.lazySet(columnIndex, timestamp);
+        for (int dimension = 0; dimension < columns.getDimensions(); dimension++) {
+            float value = dimension < sampleDimensions ? sampleValues[dimension] : 0;
+            columns.values[dimension].lazySet(columnIndex, Float.floatToRawIntBits(value));
+        }
+        writeSequence = sequence + 1;
+    }
+
+    /**
+     * Appends @count samples from the specified store, starting
+     * at the logical index @fromIndex of that store
+     */
+    public void append(ColumnarDataStore store, int fromIndex, int count) {
+        float[] sampleValues = new float[store.getDimensions()];
+        for (int index = fromIndex; index < fromIndex + count; index++) {
+            append(store.getTimestamp(index), store.getValues(index, sampleValues));
+        }
+    }
+
+    /**
+     * Clears @target and copies all published samples with a sequence number of at
+     * least @fromSequence into it. The copied samples keep their sequence numbers.
+     * Samples that get overwritten while copying are not part of the copy.
+     * Can be called from any thread, returns the sequence number following the
+     * newest copied sample.
+     */
+    public long readInto(ColumnarDataStore target, long fromSequence) {
+        long writeSequence = this.writeSequence;
+        Columns columns = this.columns;
+        long firstSequence = Math.max(fromSequence, oldestSequence);
+        firstSequence = Math.max(firstSequence, columns.firstSequence);
+        firstSequence = Math.max(firstSequence, writeSequence - columns.getCapacity());
+        firstSequence = Math.min(firstSequence, writeSequence);
+
+        target.resetSequence(firstSequence);
+        float[] sampleValues = new float[columns.getDimensions()];
+        for (long sequence = firstSequence; sequence < writeSequence; sequence++) {
+            int columnIndex = columns.getColumnIndex(sequence);
+            for (int dimension = 0; dimension < sampleValues.length; dimension++) {
+                sampleValues[dimension] = Float.intBitsToFloat(columns.values[dimension].get(columnIndex));
+            }
+            target.append(columns.timestamps.get(columnIndex), sampleValues);
+        }
+
+        // discard samples that have been overwritten while copying
+        long validSequence = claimSequence - columns.getCapacity();
+        target.removeBefore(Math.min(validSequence, writeSequence));
+        return writeSequence;
+    }
+
+    /**
+     * Makes sure that the columns can hold the next sample with the specified
+     * amount of dimensions. Returns null if the store can't hold any samples.
+     */
+    private Columns ensureColumns(int sampleDimensions) {
+        int columnCapacity = columns.getCapacity();
+        if (isGrowable()) {
+            if (size() == columnCapacity) {
+                columnCapacity = Math.max(INITIAL_CAPACITY_DEFAULT, columnCapacity * 2);
+            }
+        } else {
+            if (capacity < 1) {
+                return null;
+            }
+            columnCapacity = capacity;
+        }
+        resizeColumns(columnCapacity, Math.max(columns.getDimensions(), sampleDimensions));
+        return columns;
+    }
+
+    /**
+     * Publishes new columns if their size or the amount of dimensions changed.
+     * Keeps the newest samples that fit into the new columns.
+     */
+    private void resizeColumns(int columnCapacity, int dimensions) {
+        Columns columns = this.columns;
+        boolean capacityChanged = columnCapacity != columns.getCapacity();
+        if (!capacityChanged && dimensions == columns.getDimensions()) {
+            return;
+        }
+
+        long writeSequence = this.writeSequence;
+        long keptSequence = Math.max(oldestSequence, writeSequence - columnCapacity);
+
+        Columns resizedColumns;
+        if (capacityChanged) {
+            resizedColumns = new Columns(columnCapacity, dimensions, keptSequence);
+            for (long sequence = keptSequence; sequence < writeSequence; sequence++) {
+                resizedColumns.copySample(columns, sequence);
+            }
+        } else {
+            // sample positions don't change, existing columns can be shared
+            resizedColumns = new Columns(columns, dimensions, keptSequence);
+        }
+
+        this.columns = resizedColumns;
+        oldestSequence = keptSequence;
+    }
+
+    /**
+     * Changes the maximum amount of samples. Shrinking the capacity below the
+     * current size drops the oldest samples.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        if (isGrowable()) {
+            return;
+        }
+        if (columns.getCapacity() == 0 && size() == 0) {
+            // columns will be allocated on the next append
+            return;
+        }
+        resizeColumns(Math.max(capacity, 0), columns.getDimensions());
+    }
+
+    /**
+     * Removes the specified amount of samples, starting with the oldest one.
+     * Only moves the oldest sequence number, no data is copied.
+     */
+    public void removeOldest(int count) {
+        if (count <= 0) {
+            return;
+        }
+        removeBefore(oldestSequence + count);
+    }
+
+    /**
+     * Removes all samples with a sequence number below the specified one
+     */
+    public void removeBefore(long sequence) {
+        oldestSequence = Math.max(oldestSequence, Math.min(sequence, writeSequence));
+    }
+
+    public void clear() {
+        oldestSequence = writeSequence;
+    }
+
+    /**
+     * Clears the store and lets the next appended sample get the specified sequence number
+     */
+    private void resetSequence(long sequence) {
+        columns = new Columns(columns, columns.getDimensions(), sequence);
+        writeSequence = sequence;
+        claimSequence = sequence;
+        oldestSequence = sequence;
+    }
+
+    /**
+     * Maps a sequence number to a logical index. The result is negative if the
+     * sample has already been evicted and >= size if it hasn't been appended yet.
+     */
+    public int getIndex(long sequence) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, sequence - getOldestSequence()));
+    }
+
+    /**
+     * Returns the sequence number of the oldest available sample
+     */
+    public long getOldestSequence() {
+        return oldestSequence;
+    }
+
+    /**
+     * Returns the sequence number that the next appended sample will get
+     */
+    public long getWriteSequence() {
+        return writeSequence;
+    }
+
+    public long getTimestamp(int index) {
+        Columns columns = this.columns;
+        return columns.timestamps.get(columns.getColumnIndex(oldestSequence + index));
+    }
+
+    public float getValue(int index, int dimension) {
+        Columns columns = this.columns;
+        return Float.intBitsToFloat(columns.values[dimension].get(columns.getColumnIndex(oldestSequence + index)));
+    }
+
+    public void setValue(int index, int dimension, float value) {
+        Columns columns = this.columns;
+        columns.values[dimension].lazySet(columns.getColumnIndex(oldestSequence + index), Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Copies the values of the sample at the specified index into a new array
+     */
+    public float[] getValues(int index) {
+        return getValues(index, new float[getDimensions()]);
+    }
+
+    /**
+     * Copies the values of the sample at the specified index into the
+     * specified array, which needs to hold at least @dimensions values
+     */
+    public float[] getValues(int index, float[] sampleValues) {
+        Columns columns = this.columns;
+        int columnIndex = columns.getColumnIndex(oldestSequence + index);
+        for (int dimension = 0; dimension < columns.getDimensions(); dimension++) {
+            sampleValues[dimension] = Float.intBitsToFloat(columns.values[dimension].get(columnIndex));
+        }
+        return sampleValues;
+    }
+
+    public int size() {
+        long oldestSequence = this.oldestSequence;
+        return (int) (writeSequence - oldestSequence);
+    }
+
+    public boolean isGrowable() {
+        return capacity == CAPACITY_GROWABLE;
+    }
+
+    public int getDimensions() {
+        return columns.getDimensions();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the amount of samples that the currently allocated columns can hold
+     */
+    public int getColumnCapacity() {
+        return columns.getCapacity();
+    }
+
+    /**
+     * Returns the amount of bytes needed to store one sample. If no sample
+     * has been added yet, @DIMENSIONS_DEFAULT dimensions are assumed.
+     */
+    public int getBytesPerSample() {
+        int dimensions = getDimensions() > 0 ? getDimensions() : DIMENSIONS_DEFAULT;
+        return 8 + 4 * dimensions;
+    }
+
+    /**
+     * Returns the amount of bytes used by the currently allocated columns
+     */
+    public long getAllocatedBytes() {
+        Columns columns = this.columns;
+        return (long) columns.getCapacity() * (8 + 4 * columns.getDimensions());
+    }
+
+    /**
+     * Immutable set of columns, replaced as a whole when the store gets resized
+     */
+    private static class Columns implements Serializable {
+
+        private final AtomicLongArray timestamps;
+        private final AtomicIntegerArray[] values;
+        private final long firstSequence;
+
+        private Columns(int capacity, int dimensions, long firstSequence) {
+            timestamps = new AtomicLongArray(capacity);
+            values = new AtomicIntegerArray[dimensions];
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                values[dimension] = new AtomicIntegerArray(capacity);
+            }
+            this.firstSequence = firstSequence;
+        }
+
+        /**
+         * Creates columns that share the existing columns of @columns
+         * and add new value columns if more dimensions are needed
+         */
+        private Columns(Columns columns, int dimensions, long firstSequence) {
+            timestamps = columns.timestamps;
+            values = new AtomicIntegerArray[dimensions];
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                if (dimension < columns.getDimensions()) {
+                    values[dimension] = columns.values[dimension];
+                } else {
+                    values[dimension] = new AtomicIntegerArray(columns.getCapacity());
+                }
+            }
+            this.firstSequence = firstSequence;
+        }
+
+        private void copySample(Columns columns, long sequence) {
+            int sourceIndex = columns.getColumnIndex(sequence);
+            int targetIndex = getColumnIndex(sequence);
+            timestamps.lazySet(targetIndex, columns.timestamps.get(sourceIndex));
+            int copiedDimensions = Math.min(getDimensions(), columns.getDimensions());
+            for (int dimension = 0; dimension < copiedDimensions; dimension++) {
+                values[dimension].lazySet(targetIndex, columns.values[dimension].get(sourceIndex));
+            }
+        }
+
+        private int getColumnIndex(long sequence) {
+            return (int) (sequence % timestamps.length());
+        }
+
+        private int getCapacity() {
+            return timestamps.length();
+        }
+
+        private int getDimensions() {
+            return values.length;
+        }
+
+    }
+
+}
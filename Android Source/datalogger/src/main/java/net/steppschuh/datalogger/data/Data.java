@@ -1,5 +1,8 @@
 package net.steppschuh.datalogger.data;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Data {
 
     private long timestamp;
@@ -1,41 +1,68 @@
 package net.steppschuh.datalogger.data;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Holds the samples of a single sensor. Samples may only be added and removed
+ * by one thread at a time, while other threads can use readSince() or snapshot()
+ * to get a consistent copy without blocking the writer.
+ *
+ * When sent to another device, the source name may be replaced by
+ * a @sourceId, which can be resolved using a @SessionSchema.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class DataBatch implements Serializable {
 
     public static final int CAPACITY_UNLIMITED = -1;
     public static final int CAPACITY_DEFAULT = 500;
+    public static final float VALUE_SCALE_NOT_SET = 0;
+
+    public static final String JSON_LAYOUT_ROWS = "rows";
+    public static final String JSON_LAYOUT_COLUMNS = "columns";
 
     private int type;
     private String source;
-    private List<Data> dataList;
+    private int sourceId = SessionSchema.SOURCE_ID_NOT_SET;
+    private ColumnarDataStore dataStore;
+    private DataRollup rollup;
+    private DataStatistics statistics;
+    private float[] evictedValues;
     private int capacity;
+    private float valueScale = VALUE_SCALE_NOT_SET;
 
     public DataBatch() {
-        dataList = new ArrayList<>();
         capacity = CAPACITY_DEFAULT;
+        dataStore = new ColumnarDataStore(capacity);
     }
 
+    /**
+     * Creates a consistent copy of the specified batch, which may
+     * be modified by another thread in the meantime
+     */
     public DataBatch(DataBatch dataBatch) {
         type = dataBatch.getType();
         source = dataBatch.getSource();
-        dataList = new ArrayList<>(dataBatch.getDataList().size());
-        dataList.addAll(dataBatch.getDataList());
+        sourceId = dataBatch.getSourceId();
+        dataStore = new ColumnarDataStore(dataBatch.dataStore);
         capacity = dataBatch.capacity;
+        valueScale = dataBatch.valueScale;
     }
 
     public DataBatch(List<Data> dataList) {
         this();
-        this.dataList = dataList;
+        setDataList(dataList);
     }
 
     public DataBatch(String source) {
@@ -44,29 +71,31 @@ public class DataBatch implements Serializable {
     }
 
     private void trimDataToCapacity() {
-        // check if there's a capacity limit
-        if (capacity == CAPACITY_UNLIMITED) {
-            return;
-        }
-
-        // check if trimming is needed
-        if (dataList == null || dataList.size() < capacity) {
-            return;
+        if (capacity != CAPACITY_UNLIMITED) {
+            removeOldestFromStatistics(dataStore.size() - capacity);
         }
-
-        // remove oldest data
-        while (dataList.size() > capacity) {
-            dataList.remove(0);
+        // the store evicts the oldest data by itself
+        if (capacity == CAPACITY_UNLIMITED) {
+            dataStore.setCapacity(ColumnarDataStore.CAPACITY_GROWABLE);
+        } else {
+            dataStore.setCapacity(capacity);
         }
     }
 
+    /**
+     * Rounds all values in place. If the values only need to be sent with less
+     * precision, prefer setting a @valueScale, which doesn't modify the batch.
+     */
     public void roundToDecimalPlaces(int decimalPlaces) {
-        for (int dataIndex = 0; dataIndex < dataList.size(); dataIndex++) {
-            Data data = dataList.get(dataIndex);
-            for (int dimension = 0; dimension < data.getValues().length; dimension++) {
-                data.getValues()[dimension] = roundToDecimalPlaces(data.getValues()[dimension], decimalPlaces);
+        double shift = Math.pow(10, decimalPlaces);
+        for (int dataIndex = 0; dataIndex < dataStore.size(); dataIndex++) {
+            for (int dimension = 0; dimension < dataStore.getDimensions(); dimension++) {
+                float value = dataStore.getValue(dataIndex, dimension);
+                dataStore.setValue(dataIndex, dimension, (float) (Math.round(value * shift) / shift));
             }
         }
+        // statistics will be re-created from the rounded values
+        statistics = null;
     }
 
     public static float roundToDecimalPlaces(float value, int decimalPlaces) {
@@ -76,56 +105,223 @@ public class DataBatch implements Serializable {
 
     @JsonIgnore
     public float getFrequency() {
-        Data newest = getNewestData();
-        Data oldest = getOldestData();
-        if (newest == oldest) {
+        if (dataStore.size() < 2) {
+            return 0;
+        }
+        long delta = getTimestamp(dataStore.size() - 1) - getTimestamp(0);
+        if (delta <= 0) {
             return 0;
         }
-        long delta = newest.getTimestamp() - oldest.getTimestamp();
-        return dataList.size() / (delta / TimeUnit.SECONDS.toMillis(1));
+        return dataStore.size() / ((float) delta / TimeUnit.SECONDS.toMillis(1));
     }
 
     public void addData(Data data) {
-        dataList.add(data);
-        trimDataToCapacity();
+        addData(data.getTimestamp(), data.getValues());
     }
 
     public void addData(List<Data> data) {
-        dataList.addAll(data);
-        trimDataToCapacity();
+        for (int dataIndex = 0; dataIndex < data.size(); dataIndex++) {
+            addData(data.get(dataIndex));
+        }
+    }
+
+    /**
+     * Appends all samples of the specified batch by copying
+     * its columns, without creating any @Data objects
+     */
+    public void addData(DataBatch dataBatch) {
+        float[] values = new float[dataBatch.getDimensions()];
+        for (int dataIndex = 0; dataIndex < dataBatch.getSize(); dataIndex++) {
+            addData(dataBatch.getTimestamp(dataIndex), dataBatch.dataStore.getValues(dataIndex, values));
+        }
+    }
+
+    /**
+     * Appends a sample without creating a @Data object. The values are copied
+     * into the primitive columns, the passed array can be re-used by the caller.
+     * If the batch is full, the oldest sample will be overwritten.
+     */
+    public void addData(long timestamp, float[] values) {
+        if (statistics != null && !dataStore.isGrowable() && dataStore.size() >= dataStore.getCapacity()) {
+            removeOldestFromStatistics(1);
+        }
+        dataStore.append(timestamp, values);
+        if (rollup != null) {
+            rollup.add(timestamp, values);
+        }
+        if (statistics != null) {
+            if (statistics.getDimensions() == dataStore.getDimensions()) {
+                statistics.add(timestamp, values);
+            } else {
+                statistics = null;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest samples from the statistics, needs to be
+     * called before they get evicted from the data store
+     */
+    private void removeOldestFromStatistics(int count) {
+        if (statistics == null) {
+            return;
+        }
+        if (evictedValues == null || evictedValues.length < dataStore.getDimensions()) {
+            evictedValues = new float[dataStore.getDimensions()];
+        }
+        count = Math.min(count, dataStore.size());
+        for (int dataIndex = 0; dataIndex < count; dataIndex++) {
+            statistics.removeOldest(dataStore.getValues(dataIndex, evictedValues));
+        }
     }
 
     @JsonIgnore
     public Data getNewestData() {
-        if (dataList == null || dataList.size() < 1) {
+        if (dataStore.size() < 1) {
             return null;
         }
-        return dataList.get(dataList.size() - 1);
+        return getData(dataStore.size() - 1);
     }
 
     @JsonIgnore
     public Data getOldestData() {
-        if (dataList == null || dataList.size() < 1) {
+        if (dataStore.size() < 1) {
             return null;
         }
-        return dataList.get(0);
+        return getData(0);
     }
 
-    public List<Data> getDataSince(long timestamp) {
-        List<Data> dataSince = new ArrayList<>();
-        for (int i = dataList.size() - 1; i >= 0; i--) {
-            if (dataList.get(i).getTimestamp() > timestamp) {
-                dataSince.add(dataList.get(i));
+    /**
+     * Creates a @Data object for the sample at the specified index, with
+     * the index 0 referring to the oldest sample
+     */
+    public Data getData(int index) {
+        Data data = new Data(source, dataStore.getValues(index));
+        data.setTimestamp(dataStore.getTimestamp(index));
+        return data;
+    }
+
+    /**
+     * Returns an iterator that walks over the samples from oldest to newest,
+     * directly reading from the columns of this batch
+     */
+    public DataIterator iterator() {
+        return new DataIterator(this);
+    }
+
+    /**
+     * Returns the index of the oldest sample with a timestamp after the specified
+     * one, or the size of the batch if there is none. Samples are appended in
+     * timestamp order, so this is a binary search.
+     */
+    public int indexOfFirstAfter(long timestamp) {
+        int low = 0;
+        int high = dataStore.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dataStore.getTimestamp(middle) > timestamp) {
+                high = middle;
             } else {
-                break;
+                low = middle + 1;
             }
         }
-        Collections.reverse(dataSince);
-        return dataSince;
+        return low;
+    }
+
+    /**
+     * Returns a view on the samples from @fromIndex (inclusive) to @toIndex (exclusive)
+     * without copying them
+     */
+    public DataBatchView subView(int fromIndex, int toIndex) {
+        return new DataBatchView(this, fromIndex, toIndex);
+    }
+
+    /**
+     * Returns a view on the samples with a timestamp after @startTimestamp
+     * and not after @endTimestamp
+     */
+    public DataBatchView getViewBetween(long startTimestamp, long endTimestamp) {
+        int fromIndex = indexOfFirstAfter(startTimestamp);
+        int toIndex = Math.max(fromIndex, indexOfFirstAfter(endTimestamp));
+        return subView(fromIndex, toIndex);
+    }
+
+    /**
+     * Returns the samples with a timestamp after @startTimestamp
+     * and not after @endTimestamp
+     */
+    public List<Data> getDataBetween(long startTimestamp, long endTimestamp) {
+        return getViewBetween(startTimestamp, endTimestamp).getDataList();
+    }
+
+    /**
+     * Copies all samples with a sequence number of at least @cursor into a new batch.
+     * The returned result contains the cursor for the next read and the amount of
+     * samples that have been overwritten since the last read.
+     */
+    public DataReadResult readSince(long cursor) {
+        DataBatch newData = createEmptyCopy();
+        long nextCursor = dataStore.readInto(newData.dataStore, cursor);
+        long droppedCount = Math.max(0, newData.getOldestSequence() - cursor);
+        return new DataReadResult(newData, nextCursor, droppedCount);
+    }
+
+    /**
+     * Returns a consistent copy of all samples, can be called from any thread
+     */
+    public DataBatch snapshot() {
+        return new DataBatch(this);
+    }
+
+    /**
+     * Creates an empty batch with the same type, source and capacity
+     */
+    DataBatch createEmptyCopy() {
+        DataBatch dataBatch = new DataBatch(source);
+        dataBatch.setType(type);
+        dataBatch.setSourceId(sourceId);
+        dataBatch.setCapacity(capacity);
+        return dataBatch;
+    }
+
+    public List<Data> getDataSince(long timestamp) {
+        return subView(indexOfFirstAfter(timestamp), dataStore.size()).getDataList();
+    }
+
+    /**
+     * Returns one sample per rollup bucket between the specified timestamps,
+     * containing the mean values of the bucket. Uses the coarsest rollup level
+     * that has at least @minimumBucketCount buckets in that range. Returns null if
+     * rollups are disabled or the range is too short, use the raw samples instead.
+     */
+    public DataBatch getRollupDataBetween(long startTimestamp, long endTimestamp, int minimumBucketCount) {
+        if (rollup == null) {
+            return null;
+        }
+        RollupLevel level = rollup.getLevel(startTimestamp, endTimestamp, minimumBucketCount);
+        if (level == null) {
+            return null;
+        }
+
+        DataBatch dataBatch = createEmptyCopy();
+        dataBatch.setCapacity(CAPACITY_UNLIMITED);
+        float[] values = new float[level.getDimensions()];
+        int fromIndex = level.indexOfFirstAfter(startTimestamp - level.getBucketDuration());
+        int toIndex = level.indexOfFirstAfter(endTimestamp);
+        for (int bucketIndex = fromIndex; bucketIndex < toIndex; bucketIndex++) {
+            for (int dimension = 0; dimension < values.length; dimension++) {
+                values[dimension] = level.getMean(bucketIndex, dimension);
+            }
+            long bucketCenterTimestamp = level.getTimestamp(bucketIndex) + level.getBucketDuration() / 2;
+            dataBatch.addData(bucketCenterTimestamp, values);
+        }
+        return dataBatch;
     }
 
     public void removeDataBefore(long timestamp) {
-        dataList = getDataSince(timestamp);
+        int count = indexOfFirstAfter(timestamp);
+        removeOldestFromStatistics(count);
+        dataStore.removeOldest(count);
     }
 
     @JsonIgnore
@@ -138,25 +334,359 @@ public class DataBatch implements Serializable {
     public String toJson() {
         String jsonData = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            jsonData = mapper.writeValueAsString(this);
+            jsonData = JsonSerialization.toJson(this);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return jsonData;
     }
 
+    /**
+     * Returns the JSON representation in the specified layout, either
+     * @JSON_LAYOUT_ROWS (like toJson()) or @JSON_LAYOUT_COLUMNS
+     */
+    public String toJson(String layout) {
+        try {
+            StringWriter writer = new StringWriter();
+            JsonGenerator generator = JsonSerialization.getJsonFactory().createGenerator(writer);
+            writeJson(generator, layout);
+            generator.close();
+            return writer.toString();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Streams the batch into the specified generator. Produces the same structure
+     * as toJson(), but reads the samples directly from the columns and doesn't
+     * repeat the source for every sample.
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        writeJson(generator, JSON_LAYOUT_ROWS);
+    }
+
+    /**
+     * Streams the batch into the specified generator. With @JSON_LAYOUT_COLUMNS,
+     * the samples are written as a "timestamps" array and a "values" array that
+     * contains one array per dimension, instead of a "dataList" of objects.
+     */
+    public void writeJson(JsonGenerator generator, String layout) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("type", type);
+        if (source != null) {
+            generator.writeStringField("source", source);
+        }
+        generator.writeNumberField("sourceId", sourceId);
+        generator.writeNumberField("capacity", capacity);
+        if (JSON_LAYOUT_COLUMNS.equals(layout)) {
+            writeJsonColumns(generator);
+        } else {
+            writeJsonDataList(generator);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeJsonDataList(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("dataList");
+        int dimensions = dataStore.getDimensions();
+        for (int dataIndex = 0; dataIndex < dataStore.size(); dataIndex++) {
+            generator.writeStartObject();
+            generator.writeNumberField("timestamp", dataStore.getTimestamp(dataIndex));
+            generator.writeArrayFieldStart("values");
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                generator.writeNumber(dataStore.getValue(dataIndex, dimension));
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeJsonColumns(JsonGenerator generator) throws IOException {
+        int size = dataStore.size();
+        generator.writeArrayFieldStart("timestamps");
+        for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+            generator.writeNumber(dataStore.getTimestamp(dataIndex));
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("values");
+        for (int dimension = 0; dimension < dataStore.getDimensions(); dimension++) {
+            generator.writeStartArray();
+            for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+                generator.writeNumber(dataStore.getValue(dataIndex, dimension));
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Reads a batch written by writeJson() in any layout or by toJson() from the
+     * specified parser, which needs to point to the start of the batch object.
+     * Samples are parsed directly into the columns, without creating any
+     * @Data objects.
+     */
+    public static DataBatch readJson(JsonParser parser) throws IOException {
+        DataBatch dataBatch = new DataBatch();
+        // the capacity may be parsed after the samples, so apply it at the end
+        int capacity = dataBatch.getCapacity();
+        dataBatch.setCapacity(CAPACITY_UNLIMITED);
+        long[] timestamps = null;
+        float[][] values = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "type":
+                    dataBatch.setType(parser.getIntValue());
+                    break;
+                case "source":
+                    dataBatch.setSource(token == JsonToken.VALUE_NULL ? null : parser.getText());
+                    break;
+                case "sourceId":
+                    dataBatch.setSourceId(parser.getIntValue());
+                    break;
+                case "capacity":
+                    capacity = parser.getIntValue();
+                    break;
+                case "dataList":
+                    if (token == JsonToken.START_ARRAY) {
+                        readJsonDataList(parser, dataBatch);
+                    }
+                    break;
+                case "timestamps":
+                    if (token == JsonToken.START_ARRAY) {
+                        timestamps = readJsonTimestamps(parser);
+                    }
+                    break;
+                case "values":
+                    if (token == JsonToken.START_ARRAY) {
+                        values = readJsonValues(parser);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        // columns can only be added once both of them have been parsed
+        if (timestamps != null) {
+            addJsonColumns(dataBatch, timestamps, values);
+        }
+        dataBatch.setCapacity(capacity);
+        return dataBatch;
+    }
+
+    private static long[] readJsonTimestamps(JsonParser parser) throws IOException {
+        long[] timestamps = new long[CAPACITY_DEFAULT];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+            timestamps[size] = parser.getLongValue();
+            size++;
+        }
+        return Arrays.copyOf(timestamps, size);
+    }
+
+    private static float[][] readJsonValues(JsonParser parser) throws IOException {
+        List<float[]> columns = new ArrayList<>(ColumnarDataStore.DIMENSIONS_DEFAULT);
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            float[] column = new float[CAPACITY_DEFAULT];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == column.length) {
+                    column = Arrays.copyOf(column, size * 2);
+                }
+                column[size] = parser.getFloatValue();
+                size++;
+            }
+            columns.add(Arrays.copyOf(column, size));
+        }
+        return columns.toArray(new float[columns.size()][]);
+    }
+
+    private static void addJsonColumns(DataBatch dataBatch, long[] timestamps, float[][] columns) throws IOException {
+        int dimensions = columns != null ? columns.length : 0;
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            if (columns[dimension].length != timestamps.length) {
+                throw new IOException("Values of dimension " + dimension + " don't match the amount of timestamps");
+            }
+        }
+        float[] values = new float[dimensions];
+        for (int dataIndex = 0; dataIndex < timestamps.length; dataIndex++) {
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                values[dimension] = columns[dimension][dataIndex];
+            }
+            dataBatch.addData(timestamps[dataIndex], values);
+        }
+    }
+
+    private static void readJsonDataList(JsonParser parser, DataBatch dataBatch) throws IOException {
+        float[] parsedValues = new float[ColumnarDataStore.DIMENSIONS_DEFAULT];
+        float[] values = new float[0];
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            long timestamp = 0;
+            int dimensions = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("timestamp".equals(fieldName)) {
+                    timestamp = parser.getLongValue();
+                } else if ("values".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (dimensions == parsedValues.length) {
+                            parsedValues = Arrays.copyOf(parsedValues, dimensions * 2);
+                        }
+                        parsedValues[dimensions] = parser.getFloatValue();
+                        dimensions++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            // the values array is only re-allocated if the amount of dimensions changes
+            if (values.length != dimensions) {
+                values = new float[dimensions];
+            }
+            System.arraycopy(parsedValues, 0, values, 0, dimensions);
+            dataBatch.addData(timestamp, values);
+        }
+    }
+
+    /**
+     * Columnar accessors, these don't create any @Data objects. They should
+     * only be used by the thread that modifies the batch or on copies.
+     */
+    @JsonIgnore
+    public int getSize() {
+        return dataStore.size();
+    }
+
+    @JsonIgnore
+    public int getDimensions() {
+        return dataStore.getDimensions();
+    }
+
+    public long getTimestamp(int index) {
+        return dataStore.getTimestamp(index);
+    }
+
+    public float getValue(int index, int dimension) {
+        return dataStore.getValue(index, dimension);
+    }
+
+    /**
+     * Returns the sequence number of the oldest available sample
+     */
+    @JsonIgnore
+    public long getOldestSequence() {
+        return dataStore.getOldestSequence();
+    }
+
+    /**
+     * Returns the sequence number that the next appended sample will get
+     */
+    @JsonIgnore
+    public long getWriteSequence() {
+        return dataStore.getWriteSequence();
+    }
+
+    @JsonIgnore
+    public int getBytesPerSample() {
+        return dataStore.getBytesPerSample();
+    }
+
+    @JsonIgnore
+    public long getAllocatedBytes() {
+        return dataStore.getAllocatedBytes();
+    }
+
+    /**
+     * Enables a @DataRollup that gets updated whenever data is added.
+     * The existing samples are added to the rollup right away.
+     */
+    public void setRollupEnabled(boolean rollupEnabled) {
+        if (!rollupEnabled) {
+            rollup = null;
+            return;
+        }
+        if (rollup != null) {
+            return;
+        }
+        rollup = new DataRollup();
+        float[] values = new float[dataStore.getDimensions()];
+        for (int dataIndex = 0; dataIndex < dataStore.size(); dataIndex++) {
+            rollup.add(dataStore.getTimestamp(dataIndex), dataStore.getValues(dataIndex, values));
+        }
+    }
+
+    @JsonIgnore
+    public boolean isRollupEnabled() {
+        return rollup != null;
+    }
+
+    /**
+     * Returns the streaming statistics of the current samples. They are created
+     * on the first call and kept up to date when samples are added or removed
+     * afterwards, which doesn't cost anything for batches that never use them.
+     */
+    @JsonIgnore
+    public DataStatistics getStatistics() {
+        if (statistics == null) {
+            statistics = new DataStatistics(dataStore.getDimensions());
+            float[] values = new float[dataStore.getDimensions()];
+            for (int dataIndex = 0; dataIndex < dataStore.size(); dataIndex++) {
+                statistics.add(dataStore.getTimestamp(dataIndex), dataStore.getValues(dataIndex, values));
+            }
+        }
+        return statistics;
+    }
+
+    @JsonIgnore
+    public DataRollup getRollup() {
+        return rollup;
+    }
+
+    @JsonIgnore
+    public ColumnarDataStore getDataStore() {
+        return dataStore;
+    }
+
     /**
      * Getter & Setter
      */
+
+    /**
+     * Returns a compatibility view of the stored samples. Each call creates new
+     * @Data objects, prefer the columnar accessors for iterating over samples.
+     */
     public List<Data> getDataList() {
+        List<Data> dataList = new ArrayList<>(dataStore.size());
+        for (int dataIndex = 0; dataIndex < dataStore.size(); dataIndex++) {
+            dataList.add(getData(dataIndex));
+        }
         return dataList;
     }
 
     public void setDataList(List<Data> dataList) {
-        this.dataList = dataList;
+        dataStore.clear();
+        statistics = null;
+        if (rollup != null) {
+            rollup.clear();
+        }
+        if (dataList == null) {
+            return;
+        }
+        for (int dataIndex = 0; dataIndex < dataList.size(); dataIndex++) {
+            Data data = dataList.get(dataIndex);
+            addData(data.getTimestamp(), data.getValues());
+        }
     }
 
     public int getType() {
@@ -175,11 +705,34 @@ public class DataBatch implements Serializable {
         this.source = source;
     }
 
+    public int getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(int sourceId) {
+        this.sourceId = sourceId;
+    }
+
     public int getCapacity() {
         return capacity;
     }
 
     public void setCapacity(int capacity) {
         this.capacity = capacity;
+        trimDataToCapacity();
+    }
+
+    /**
+     * Returns the precision that values need to be encoded with,
+     * see @QuantizedCodec
+     */
+    @JsonIgnore
+    public float getValueScale() {
+        return valueScale;
+    }
+
+    @JsonIgnore
+    public void setValueScale(float valueScale) {
+        this.valueScale = valueScale;
     }
 }
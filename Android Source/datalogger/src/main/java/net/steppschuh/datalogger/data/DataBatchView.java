@@ -0,0 +1,82 @@
+package net.steppschuh.datalogger.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only window on a range of samples of a @DataBatch. No data is copied,
+ * the accessors read directly from the columns of the batch.
+ *
+ * Similar to List.subList(), the indices of a view refer to the state of the
+ * batch when the view was created. A view shouldn't be used after the batch
+ * has been modified, use toDataBatch() to keep a copy of the samples.
+ */
+public class DataBatchView {
+
+    private final DataBatch dataBatch;
+    private final int fromIndex;
+    private final int toIndex;
+
+    /**
+     * Creates a view on the samples from @fromIndex (inclusive) to @toIndex (exclusive)
+     */
+    public DataBatchView(DataBatch dataBatch, int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > dataBatch.getSize() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Invalid range: " + fromIndex + " - " + toIndex + " (size " + dataBatch.getSize() + ")");
+        }
+        this.dataBatch = dataBatch;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+
+    public int getSize() {
+        return toIndex - fromIndex;
+    }
+
+    public int getDimensions() {
+        return dataBatch.getDimensions();
+    }
+
+    public long getTimestamp(int index) {
+        return dataBatch.getTimestamp(fromIndex + index);
+    }
+
+    public float getValue(int index, int dimension) {
+        return dataBatch.getValue(fromIndex + index, dimension);
+    }
+
+    public Data getData(int index) {
+        return dataBatch.getData(fromIndex + index);
+    }
+
+    public List<Data> getDataList() {
+        List<Data> dataList = new ArrayList<>(getSize());
+        for (int index = fromIndex; index < toIndex; index++) {
+            dataList.add(dataBatch.getData(index));
+        }
+        return dataList;
+    }
+
+    /**
+     * Copies the samples of this view into a new @DataBatch with
+     * the same type, source and capacity as the viewed batch
+     */
+    public DataBatch toDataBatch() {
+        DataBatch copy = dataBatch.createEmptyCopy();
+        copy.getDataStore().append(dataBatch.getDataStore(), fromIndex, getSize());
+        return copy;
+    }
+
+    public DataBatch getDataBatch() {
+        return dataBatch;
+    }
+
+    public int getFromIndex() {
+        return fromIndex;
+    }
+
+    public int getToIndex() {
+        return toIndex;
+    }
+
+}
@@ -0,0 +1,64 @@
+package net.steppschuh.datalogger.data;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks over the samples of a @DataBatch from oldest to newest without copying them.
+ *
+ * The @Data returned by next() is re-used for every sample, copy it if it needs
+ * to be kept. Alternatively, the timestamp and values of the current sample can
+ * be read with getTimestamp() and getValue(), which don't touch the @Data at all.
+ */
+public class DataIterator implements Iterator<Data> {
+
+    private final ColumnarDataStore dataStore;
+    private final Data data;
+    private int index = -1;
+
+    public DataIterator(DataBatch dataBatch) {
+        dataStore = dataBatch.getDataStore();
+        data = new Data(dataBatch.getSource(), new float[dataStore.getDimensions()]);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index + 1 < dataStore.size();
+    }
+
+    /**
+     * Moves to the next sample without updating the re-used @Data
+     */
+    public void moveToNext() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        index++;
+    }
+
+    @Override
+    public Data next() {
+        moveToNext();
+        data.setTimestamp(dataStore.getTimestamp(index));
+        dataStore.getValues(index, data.getValues());
+        return data;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public long getTimestamp() {
+        return dataStore.getTimestamp(index);
+    }
+
+    public float getValue(int dimension) {
+        return dataStore.getValue(index, dimension);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+}
@@ -0,0 +1,40 @@
+package net.steppschuh.datalogger.data;
+
+/**
+ * Result of an incremental read from a @DataBatch, see DataBatch.readSince()
+ */
+public class DataReadResult {
+
+    private DataBatch dataBatch;
+    private long nextCursor;
+    private long droppedCount;
+
+    public DataReadResult(DataBatch dataBatch, long nextCursor, long droppedCount) {
+        this.dataBatch = dataBatch;
+        this.nextCursor = nextCursor;
+        this.droppedCount = droppedCount;
+    }
+
+    /**
+     * Returns true if samples have been overwritten before they could be read
+     */
+    public boolean hasDroppedData() {
+        return droppedCount > 0;
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public DataBatch getDataBatch() {
+        return dataBatch;
+    }
+
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+}
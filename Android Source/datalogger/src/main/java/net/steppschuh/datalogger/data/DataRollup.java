@@ -0,0 +1,67 @@
+package net.steppschuh.datalogger.data;
+
+/**
+ * Multi-resolution summary of the samples of a @DataBatch. Each @RollupLevel
+ * aggregates the samples into buckets of a growing duration, so that long time
+ * ranges can be rendered or exported with one bucket per pixel instead of
+ * walking over every sample. Levels are updated incrementally when data is added
+ * and can cover a longer time range than the raw samples of the batch.
+ */
+public class DataRollup {
+
+    public static final long[] BUCKET_DURATIONS_DEFAULT = new long[]{10, 100, 1000, 10000};
+    public static final int BUCKET_COUNT_DEFAULT = 1024;
+
+    private RollupLevel[] levels;
+
+    public DataRollup() {
+        this(BUCKET_DURATIONS_DEFAULT, BUCKET_COUNT_DEFAULT);
+    }
+
+    /**
+     * Creates a rollup with one level for each of the specified bucket durations,
+     * which need to be in ascending order
+     */
+    public DataRollup(long[] bucketDurations, int bucketCount) {
+        levels = new RollupLevel[bucketDurations.length];
+        for (int levelIndex = 0; levelIndex < bucketDurations.length; levelIndex++) {
+            levels[levelIndex] = new RollupLevel(bucketDurations[levelIndex], bucketCount);
+        }
+    }
+
+    public void add(long timestamp, float[] values) {
+        for (RollupLevel level : levels) {
+            level.add(timestamp, values);
+        }
+    }
+
+    public void clear() {
+        for (RollupLevel level : levels) {
+            level.clear();
+        }
+    }
+
+    /**
+     * Returns the coarsest level that still has at least @minimumBucketCount
+     * buckets between the specified timestamps, or null if even the finest
+     * level is too coarse for that
+     */
+    public RollupLevel getLevel(long startTimestamp, long endTimestamp, int minimumBucketCount) {
+        long timeRange = endTimestamp - startTimestamp;
+        for (int levelIndex = levels.length - 1; levelIndex >= 0; levelIndex--) {
+            if (timeRange / levels[levelIndex].getBucketDuration() >= minimumBucketCount) {
+                return levels[levelIndex];
+            }
+        }
+        return null;
+    }
+
+    public RollupLevel getLevel(int levelIndex) {
+        return levels[levelIndex];
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+}
@@ -0,0 +1,227 @@
+package net.steppschuh.datalogger.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming statistics over the samples of a @DataBatch. Keeps the minimum and
+ * maximum (using monotonic deques), the mean and variance (using Welford's
+ * algorithm) of every dimension and an exponentially weighted sampling rate.
+ *
+ * Samples need to be removed in the same order as they have been added.
+ * Adding and removing a sample takes amortized constant time, the accessors
+ * don't iterate over any samples.
+ */
+public class DataStatistics {
+
+    public static final float FREQUENCY_SMOOTHING_DEFAULT = 0.05f;
+
+    private static final long TIMESTAMP_NOT_SET = -1;
+    private static final float INTERVAL_NOT_SET = -1;
+
+    private final int dimensions;
+    private final MonotonicDeque[] minimumDeques;
+    private final MonotonicDeque[] maximumDeques;
+    private final double[] means;
+    private final double[] squaredDistances;
+
+    private long addedCount;
+    private long removedCount;
+
+    private float frequencySmoothing = FREQUENCY_SMOOTHING_DEFAULT;
+    private long lastTimestamp = TIMESTAMP_NOT_SET;
+    private float averageInterval = INTERVAL_NOT_SET;
+
+    public DataStatistics(int dimensions) {
+        this.dimensions = dimensions;
+        minimumDeques = new MonotonicDeque[dimensions];
+        maximumDeques = new MonotonicDeque[dimensions];
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            minimumDeques[dimension] = new MonotonicDeque(true);
+            maximumDeques[dimension] = new MonotonicDeque(false);
+        }
+        means = new double[dimensions];
+        squaredDistances = new double[dimensions];
+    }
+
+    /**
+     * Adds a sample as the newest one. Missing dimensions are treated as 0.
+     */
+    public void add(long timestamp, float[] values) {
+        long sequence = addedCount;
+        addedCount++;
+        long count = getCount();
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            float value = values != null && dimension < values.length ? values[dimension] : 0;
+            minimumDeques[dimension].add(sequence, value);
+            maximumDeques[dimension].add(sequence, value);
+
+            double delta = value - means[dimension];
+            means[dimension] += delta / count;
+            squaredDistances[dimension] += delta * (value - means[dimension]);
+        }
+
+        if (lastTimestamp != TIMESTAMP_NOT_SET) {
+            long interval = Math.max(0, timestamp - lastTimestamp);
+            if (averageInterval == INTERVAL_NOT_SET) {
+                averageInterval = interval;
+            } else {
+                averageInterval += frequencySmoothing * (interval - averageInterval);
+            }
+        }
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Removes the oldest sample, which needs to have the specified values
+     */
+    public void removeOldest(float[] values) {
+        if (getCount() == 0) {
+            return;
+        }
+        removedCount++;
+        long count = getCount();
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            minimumDeques[dimension].removeBefore(removedCount);
+            maximumDeques[dimension].removeBefore(removedCount);
+
+            if (count == 0) {
+                means[dimension] = 0;
+                squaredDistances[dimension] = 0;
+                continue;
+            }
+            float value = values != null && dimension < values.length ? values[dimension] : 0;
+            double previousMean = means[dimension];
+            means[dimension] -= (value - previousMean) / count;
+            squaredDistances[dimension] -= (value - previousMean) * (value - means[dimension]);
+            squaredDistances[dimension] = Math.max(0, squaredDistances[dimension]);
+        }
+    }
+
+    /**
+     * Returns the amount of samples that are currently covered
+     */
+    public long getCount() {
+        return addedCount - removedCount;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns the smallest value of the specified dimension, or NaN if there are no samples
+     */
+    public float getMinimum(int dimension) {
+        return minimumDeques[dimension].getFirstValue();
+    }
+
+    /**
+     * Returns the largest value of the specified dimension, or NaN if there are no samples
+     */
+    public float getMaximum(int dimension) {
+        return maximumDeques[dimension].getFirstValue();
+    }
+
+    public float getMean(int dimension) {
+        return (float) means[dimension];
+    }
+
+    public float getVariance(int dimension) {
+        if (getCount() < 2) {
+            return 0;
+        }
+        return (float) (squaredDistances[dimension] / (getCount() - 1));
+    }
+
+    public float getStandardDeviation(int dimension) {
+        return (float) Math.sqrt(getVariance(dimension));
+    }
+
+    /**
+     * Returns the exponentially weighted sampling rate in Hz
+     */
+    public float getFrequency() {
+        if (averageInterval <= 0) {
+            return 0;
+        }
+        return TimeUnit.SECONDS.toMillis(1) / averageInterval;
+    }
+
+    public float getFrequencySmoothing() {
+        return frequencySmoothing;
+    }
+
+    public void setFrequencySmoothing(float frequencySmoothing) {
+        this.frequencySmoothing = frequencySmoothing;
+    }
+
+    /**
+     * Circular deque of (sequence, value) pairs with monotonically increasing
+     * (for minimums) or decreasing (for maximums) values. The first entry always
+     * holds the extreme value of all samples that haven't been removed.
+     */
+    private static class MonotonicDeque {
+
+        private static final int CAPACITY_INITIAL = 16;
+
+        private final boolean ascending;
+        private long[] sequences = new long[CAPACITY_INITIAL];
+        private float[] values = new float[CAPACITY_INITIAL];
+        private int head;
+        private int size;
+
+        private MonotonicDeque(boolean ascending) {
+            this.ascending = ascending;
+        }
+
+        private void add(long sequence, float value) {
+            // drop entries that can't become the extreme value anymore
+            while (size > 0) {
+                float lastValue = values[getPhysicalIndex(size - 1)];
+                if (ascending ? lastValue < value : lastValue > value) {
+                    break;
+                }
+                size--;
+            }
+            if (size == sequences.length) {
+                grow();
+            }
+            int index = getPhysicalIndex(size);
+            sequences[index] = sequence;
+            values[index] = value;
+            size++;
+        }
+
+        private void removeBefore(long sequence) {
+            while (size > 0 && sequences[head] < sequence) {
+                head = getPhysicalIndex(1);
+                size--;
+            }
+        }
+
+        private float getFirstValue() {
+            if (size == 0) {
+                return Float.NaN;
+            }
+            return values[head];
+        }
+
+        private void grow() {
+            long[] grownSequences = new long[sequences.length * 2];
+            float[] grownValues = new float[values.length * 2];
+            for (int index = 0; index < size; index++) {
+                grownSequences[index] = sequences[getPhysicalIndex(index)];
+                grownValues[index] = values[getPhysicalIndex(index)];
+            }
+            sequences = grownSequences;
+            values = grownValues;
+            head = 0;
+        }
+
+        private int getPhysicalIndex(int index) {
+            return (head + index) % sequences.length;
+        }
+
+    }
+
+}
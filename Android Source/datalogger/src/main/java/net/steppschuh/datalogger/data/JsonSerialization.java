@@ -0,0 +1,80 @@
+package net.steppschuh.datalogger.data;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Central place for converting objects from and to JSON. Creating an
+ * ObjectMapper and introspecting a class is expensive, so a single mapper is
+ * shared and the readers & writers for each class are cached. Readers and
+ * writers are immutable and can be used from any thread.
+ */
+public abstract class JsonSerialization {
+
+    private static final ObjectMapper mapper = createObjectMapper();
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> indentedWriters = new ConcurrentHashMap<>();
+
+    private static ObjectMapper createObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        return mapper;
+    }
+
+    /**
+     * Returns the factory of the shared mapper, for streaming generators and parsers
+     */
+    public static JsonFactory getJsonFactory() {
+        return mapper.getFactory();
+    }
+
+    public static ObjectReader getReader(Class<?> type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = mapper.readerFor(type);
+            readers.put(type, reader);
+        }
+        return reader;
+    }
+
+    public static ObjectWriter getWriter(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = mapper.writerFor(type);
+            writers.put(type, writer);
+        }
+        return writer;
+    }
+
+    /**
+     * Returns a writer that produces human readable output, meant for debugging
+     */
+    public static ObjectWriter getIndentedWriter(Class<?> type) {
+        ObjectWriter writer = indentedWriters.get(type);
+        if (writer == null) {
+            writer = mapper.writerFor(type).with(SerializationFeature.INDENT_OUTPUT);
+            indentedWriters.put(type, writer);
+        }
+        return writer;
+    }
+
+    public static String toJson(Object value) throws Exception {
+        return getWriter(value.getClass()).writeValueAsString(value);
+    }
+
+    public static String toIndentedJson(Object value) throws Exception {
+        return getIndentedWriter(value.getClass()).writeValueAsString(value);
+    }
+
+    public static <T> T fromJson(String json, Class<T> type) throws Exception {
+        return getReader(type).readValue(json);
+    }
+
+}
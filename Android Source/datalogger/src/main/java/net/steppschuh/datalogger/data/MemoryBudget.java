@@ -0,0 +1,328 @@
+package net.steppschuh.datalogger.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import net.steppschuh.datalogger.status.MemoryStatus;
+import net.steppschuh.datalogger.status.Status;
+import net.steppschuh.datalogger.status.StatusUpdateEmitter;
+import net.steppschuh.datalogger.status.StatusUpdateHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the total amount of bytes buffered by all registered @DataBatch instances.
+ *
+ * The budget is split into quotas weighted by the sampling rate of each batch,
+ * which is measured as the amount of samples appended since the last rebalance. Every batch
+ * keeps at least @CAPACITY_MINIMUM samples, unless the budget is too small for
+ * that, in which case the minimum is scaled down for all batches. Quotas are
+ * applied by changing the capacity of the batches, which evicts the oldest samples.
+ * Batches that exceed their quota the most are shrunk first.
+ *
+ * Capacity changes are posted to the handler of the thread that writes into
+ * a batch, so that the batch is only modified by its writer thread.
+ */
+public class MemoryBudget implements StatusUpdateEmitter {
+
+    public static final String TAG = MemoryBudget.class.getSimpleName();
+
+    public static final long BUDGET_DEFAULT = 1024 * 1024;
+    public static final int CAPACITY_MINIMUM = 50;
+    public static final long REBALANCE_INTERVAL_DEFAULT = TimeUnit.SECONDS.toMillis(1);
+
+    private long budgetBytes;
+    private List<Entry> entries;
+
+    private Handler rebalanceHandler;
+    private Runnable rebalanceRunnable;
+
+    private MemoryStatus status = new MemoryStatus();
+    private StatusUpdateHandler statusUpdateHandler = new StatusUpdateHandler();
+
+    public MemoryBudget() {
+        this(BUDGET_DEFAULT);
+    }
+
+    public MemoryBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        entries = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Adds the specified batch to the budget. Capacity changes will be posted
+     * to @writerHandler, or applied directly if it is null.
+     */
+    public void register(DataBatch dataBatch, Handler writerHandler) {
+        if (getEntry(dataBatch) != null) {
+            return;
+        }
+        entries.add(new Entry(dataBatch, writerHandler));
+    }
+
+    public void unregister(DataBatch dataBatch) {
+        Entry entry = getEntry(dataBatch);
+        if (entry != null) {
+            entries.remove(entry);
+        }
+    }
+
+    private Entry getEntry(DataBatch dataBatch) {
+        for (Entry entry : entries) {
+            if (entry.dataBatch == dataBatch) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Periodically rebalances the quotas on the main thread
+     */
+    public void startRebalancing() {
+        if (rebalanceHandler != null) {
+            return;
+        }
+        rebalanceHandler = new Handler(Looper.getMainLooper());
+        rebalanceRunnable = new Runnable() {
+            @Override
+            public void run() {
+                rebalance();
+                if (rebalanceHandler != null) {
+                    rebalanceHandler.postDelayed(rebalanceRunnable, REBALANCE_INTERVAL_DEFAULT);
+                }
+            }
+        };
+        rebalanceHandler.postDelayed(rebalanceRunnable, REBALANCE_INTERVAL_DEFAULT);
+    }
+
+    public void stopRebalancing() {
+        if (rebalanceHandler == null) {
+            return;
+        }
+        rebalanceHandler.removeCallbacks(rebalanceRunnable);
+        rebalanceHandler = null;
+    }
+
+    /**
+     * Measures the sampling rates, calculates the quotas and
+     * updates the capacities of all registered batches
+     */
+    public void rebalance() {
+        List<Entry> updatedEntries = new ArrayList<>();
+        long minimumBytes = 0;
+        for (Entry entry : entries) {
+            entry.updateSampleCount();
+            if (entry.sampleCount == Entry.SAMPLE_COUNT_NOT_SET) {
+                continue;
+            }
+            minimumBytes += (long) CAPACITY_MINIMUM * entry.dataBatch.getBytesPerSample();
+            updatedEntries.add(entry);
+        }
+
+        // scale the minimum down if the budget can't hold it for all batches
+        int minimumCapacity = CAPACITY_MINIMUM;
+        if (minimumBytes > budgetBytes) {
+            minimumCapacity = (int) Math.max(1, CAPACITY_MINIMUM * budgetBytes / minimumBytes);
+        }
+
+        // idle batches keep the minimum capacity, the rest is shared by sampling
+        // rate. Batches whose share would be below the minimum get the minimum and
+        // the remaining bytes are shared by the others.
+        long availableBytes = budgetBytes;
+        List<Entry> activeEntries = new ArrayList<>();
+        for (Entry entry : updatedEntries) {
+            if (entry.sampleCount > 0) {
+                activeEntries.add(entry);
+            } else {
+                availableBytes -= entry.setMinimumQuota(minimumCapacity);
+            }
+        }
+        boolean quotasChanged = true;
+        while (quotasChanged) {
+            quotasChanged = false;
+            long totalSampleCount = 0;
+            for (Entry entry : activeEntries) {
+                totalSampleCount += entry.sampleCount;
+            }
+            for (int entryIndex = 0; entryIndex < activeEntries.size(); entryIndex++) {
+                Entry entry = activeEntries.get(entryIndex);
+                long quotaBytes = Math.max(0, availableBytes) * entry.sampleCount / totalSampleCount;
+                entry.quotaCapacity = (int) (quotaBytes / entry.dataBatch.getBytesPerSample());
+                if (entry.quotaCapacity < minimumCapacity) {
+                    availableBytes -= entry.setMinimumQuota(minimumCapacity);
+                    activeEntries.remove(entryIndex);
+                    quotasChanged = true;
+                    break;
+                }
+            }
+        }
+
+        // only apply significant changes, to avoid re-allocating columns all the time
+        for (Entry entry : updatedEntries) {
+            if (entry.isSignificantChange()) {
+                entry.applyQuota();
+            }
+        }
+
+        long projectedBytes = 0;
+        for (Entry entry : entries) {
+            projectedBytes += entry.getCapacityBytes();
+        }
+
+        // if still above budget, shrink the batches that exceed their quota the most first
+        Collections.sort(updatedEntries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry first, Entry second) {
+                // Long.compare() requires API 19
+                long firstExcessBytes = first.getExcessBytes();
+                long secondExcessBytes = second.getExcessBytes();
+                return secondExcessBytes < firstExcessBytes ? -1 : (secondExcessBytes == firstExcessBytes ? 0 : 1);
+            }
+        });
+        for (Entry entry : updatedEntries) {
+            if (projectedBytes <= budgetBytes || entry.getExcessBytes() <= 0) {
+                break;
+            }
+            projectedBytes -= entry.getExcessBytes();
+            entry.applyQuota();
+        }
+
+        updateStatus();
+    }
+
+    /**
+     * Returns the amount of bytes currently allocated by all registered batches
+     */
+    public long getUsedBytes() {
+        long usedBytes = 0;
+        for (Entry entry : entries) {
+            usedBytes += entry.dataBatch.getAllocatedBytes();
+        }
+        return usedBytes;
+    }
+
+    private void updateStatus() {
+        long usedBytes = getUsedBytes();
+        status.setBudgetBytes(budgetBytes);
+        status.setUsedBytes(usedBytes);
+        status.setHeadroomBytes(budgetBytes - usedBytes);
+        status.setDataBatchCount(entries.size());
+        status.updated(statusUpdateHandler);
+    }
+
+    /**
+     * Getter & Setter
+     */
+    @Override
+    public Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public StatusUpdateHandler getStatusUpdateHandler() {
+        return statusUpdateHandler;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    private static class Entry {
+
+        private static final long SAMPLE_COUNT_NOT_SET = -1;
+
+        private final DataBatch dataBatch;
+        private final Handler writerHandler;
+
+        private long lastWriteSequence = -1;
+        private long sampleCount = SAMPLE_COUNT_NOT_SET;
+        private int quotaCapacity;
+        private int appliedCapacity;
+
+        private Entry(DataBatch dataBatch, Handler writerHandler) {
+            this.dataBatch = dataBatch;
+            this.writerHandler = writerHandler;
+            appliedCapacity = dataBatch.getCapacity();
+        }
+
+        /**
+         * Counts the samples appended since the last call. All batches are
+         * measured over the same interval, so the counts are proportional
+         * to their sampling rates.
+         */
+        private void updateSampleCount() {
+            long writeSequence = dataBatch.getWriteSequence();
+            if (lastWriteSequence >= 0) {
+                sampleCount = writeSequence - lastWriteSequence;
+            }
+            lastWriteSequence = writeSequence;
+        }
+
+        /**
+         * Returns the amount of bytes that the batch may use with its current capacity
+         */
+        private long getCapacityBytes() {
+            if (appliedCapacity == DataBatch.CAPACITY_UNLIMITED) {
+                return dataBatch.getAllocatedBytes();
+            }
+            return (long) appliedCapacity * dataBatch.getBytesPerSample();
+        }
+
+        /**
+         * Sets the quota to the specified minimum capacity and returns its size in bytes
+         */
+        private long setMinimumQuota(int minimumCapacity) {
+            quotaCapacity = minimumCapacity;
+            return (long) minimumCapacity * dataBatch.getBytesPerSample();
+        }
+
+        private long getExcessBytes() {
+            return getCapacityBytes() - (long) quotaCapacity * dataBatch.getBytesPerSample();
+        }
+
+        /**
+         * Returns true if the quota differs from the current capacity by at least 25%
+         */
+        private boolean isSignificantChange() {
+            if (appliedCapacity == DataBatch.CAPACITY_UNLIMITED) {
+                return true;
+            }
+            return Math.abs(quotaCapacity - appliedCapacity) >= appliedCapacity / 4;
+        }
+
+        /**
+         * Changes the capacity of the batch to the quota on its writer thread
+         */
+        private void applyQuota() {
+            if (quotaCapacity == appliedCapacity) {
+                return;
+            }
+
+            final int capacity = quotaCapacity;
+            Runnable applyQuotaRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    dataBatch.setCapacity(capacity);
+                }
+            };
+            if (writerHandler == null) {
+                applyQuotaRunnable.run();
+            } else {
+                writerHandler.post(applyQuotaRunnable);
+            }
+            appliedCapacity = capacity;
+        }
+
+    }
+
+}
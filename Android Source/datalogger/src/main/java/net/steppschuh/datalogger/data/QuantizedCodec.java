@@ -0,0 +1,126 @@
+package net.steppschuh.datalogger.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the values of a @DataBatch as integer multiples of its value scale,
+ * which is usually the resolution of the sensor. Values can't be more precise
+ * than the sensor resolution anyway, so nothing meaningful is lost while each
+ * value only takes 2 instead of 4 bytes in most cases.
+ *
+ * Layout: dimensions (byte), sample count (int), value scale (float), the
+ * timestamps as written by the @TimeSeriesCodec, followed by the width (byte)
+ * and the values (short or int each) of each dimension.
+ */
+public abstract class QuantizedCodec {
+
+    private static final byte WIDTH_SHORT = 2;
+    private static final byte WIDTH_INT = 4;
+
+    /**
+     * Returns the amount of bytes that encoding the specified amount
+     * of samples takes in the worst case
+     */
+    public static int getMaximumEncodedSize(int size, int dimensions) {
+        int timestampsSize = 4 + size * 10;
+        return 1 + 4 + 4 + timestampsSize + dimensions * (1 + size * WIDTH_INT);
+    }
+
+    /**
+     * Returns false if a value of the specified batch is not finite
+     * or too large to be represented as an int multiple of the scale
+     */
+    public static boolean canEncode(DataBatch dataBatch, float valueScale) {
+        if (!(valueScale > 0) || Float.isInfinite(valueScale)) {
+            return false;
+        }
+        for (int dimension = 0; dimension < dataBatch.getDimensions(); dimension++) {
+            for (int dataIndex = 0; dataIndex < dataBatch.getSize(); dataIndex++) {
+                float value = dataBatch.getValue(dataIndex, dimension);
+                if (Float.isNaN(value) || Float.isInfinite(value)) {
+                    return false;
+                }
+                long quantizedValue = quantize(value, valueScale);
+                if (quantizedValue < Integer.MIN_VALUE || quantizedValue > Integer.MAX_VALUE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the samples of the specified batch, canEncode() must
+     * have been checked before
+     */
+    public static void writeSamples(ByteBuffer buffer, DataBatch dataBatch, float valueScale) {
+        int size = dataBatch.getSize();
+        int dimensions = dataBatch.getDimensions();
+        buffer.put((byte) dimensions);
+        buffer.putInt(size);
+        buffer.putFloat(valueScale);
+        TimeSeriesCodec.writeTimestamps(buffer, dataBatch);
+
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            boolean fitsShort = true;
+            for (int dataIndex = 0; dataIndex < size && fitsShort; dataIndex++) {
+                long quantizedValue = quantize(dataBatch.getValue(dataIndex, dimension), valueScale);
+                fitsShort = quantizedValue >= Short.MIN_VALUE && quantizedValue <= Short.MAX_VALUE;
+            }
+
+            buffer.put(fitsShort ? WIDTH_SHORT : WIDTH_INT);
+            for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+                long quantizedValue = quantize(dataBatch.getValue(dataIndex, dimension), valueScale);
+                if (fitsShort) {
+                    buffer.putShort((short) quantizedValue);
+                } else {
+                    buffer.putInt((int) quantizedValue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the samples and appends them to the specified batch
+     */
+    public static void readSamples(ByteBuffer buffer, DataBatch dataBatch) throws Exception {
+        int dimensions = buffer.get() & 0xFF;
+        int size = buffer.getInt();
+        float valueScale = buffer.getFloat();
+        TimeSeriesCodec.TimestampReader timestampReader = new TimeSeriesCodec.TimestampReader(buffer);
+
+        // values are stored column by column, so read them by absolute position
+        int[] valuesPositions = new int[dimensions];
+        byte[] widths = new byte[dimensions];
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            widths[dimension] = buffer.get();
+            if (widths[dimension] != WIDTH_SHORT && widths[dimension] != WIDTH_INT) {
+                throw new Exception("Unsupported value width: " + widths[dimension]);
+            }
+            valuesPositions[dimension] = buffer.position();
+            buffer.position(buffer.position() + size * widths[dimension]);
+        }
+
+        float[] values = new float[dimensions];
+        for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+            long timestamp = timestampReader.read();
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                int position = valuesPositions[dimension] + dataIndex * widths[dimension];
+                int quantizedValue = widths[dimension] == WIDTH_SHORT ? buffer.getShort(position) : buffer.getInt(position);
+                values[dimension] = dequantize(quantizedValue, valueScale);
+            }
+            dataBatch.addData(timestamp, values);
+        }
+        dataBatch.setValueScale(valueScale);
+    }
+
+    public static long quantize(float value, float valueScale) {
+        return Math.round((double) value / valueScale);
+    }
+
+    public static float dequantize(long quantizedValue, float valueScale) {
+        return (float) (quantizedValue * (double) valueScale);
+    }
+
+}
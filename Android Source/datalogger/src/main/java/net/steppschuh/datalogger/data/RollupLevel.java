@@ -0,0 +1,172 @@
+package net.steppschuh.datalogger.data;
+
+import java.util.Arrays;
+
+/**
+ * One level of a @DataRollup. Aggregates samples into buckets of @bucketDuration
+ * milliseconds and keeps the minimum, maximum and mean of every dimension for
+ * the newest @capacity buckets. Buckets are stored in a circular buffer, indices
+ * passed to the accessors are logical, 0 always refers to the oldest bucket.
+ *
+ * Like the index based accessors of @DataBatch, a level should only be used by
+ * the thread that adds data to the batch.
+ */
+public class RollupLevel {
+
+    private final long bucketDuration;
+    private final int capacity;
+
+    private long[] timestamps;
+    private int[] counts;
+    private float[][] minimums;
+    private float[][] maximums;
+    private double[][] sums;
+    private int dimensions;
+    private int head;
+    private int size;
+
+    public RollupLevel(long bucketDuration, int capacity) {
+        this.bucketDuration = bucketDuration;
+        this.capacity = capacity;
+        timestamps = new long[0];
+        counts = new int[0];
+        minimums = new float[0][];
+        maximums = new float[0][];
+        sums = new double[0][];
+    }
+
+    /**
+     * Adds a sample to the bucket that it belongs to. Samples that are older
+     * than the newest bucket are added to the newest bucket.
+     */
+    public void add(long timestamp, float[] values) {
+        int sampleDimensions = values != null ? values.length : 0;
+        if (timestamps.length == 0 || sampleDimensions > dimensions) {
+            allocate(sampleDimensions);
+        }
+
+        long bucketTimestamp = timestamp - (timestamp % bucketDuration);
+        int bucketIndex;
+        if (size == 0 || bucketTimestamp > timestamps[getPhysicalIndex(size - 1)]) {
+            if (size == capacity) {
+                // overwrite the oldest bucket
+                head = getPhysicalIndex(1);
+                size--;
+            }
+            bucketIndex = getPhysicalIndex(size);
+            size++;
+            timestamps[bucketIndex] = bucketTimestamp;
+            counts[bucketIndex] = 0;
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                minimums[dimension][bucketIndex] = Float.MAX_VALUE;
+                maximums[dimension][bucketIndex] = -Float.MAX_VALUE;
+                sums[dimension][bucketIndex] = 0;
+            }
+        } else {
+            bucketIndex = getPhysicalIndex(size - 1);
+        }
+
+        counts[bucketIndex]++;
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            float value = dimension < sampleDimensions ? values[dimension] : 0;
+            minimums[dimension][bucketIndex] = Math.min(minimums[dimension][bucketIndex], value);
+            maximums[dimension][bucketIndex] = Math.max(maximums[dimension][bucketIndex], value);
+            sums[dimension][bucketIndex] += value;
+        }
+    }
+
+    /**
+     * Allocates the bucket columns, existing buckets are kept
+     */
+    private void allocate(int dimensions) {
+        if (timestamps.length == 0) {
+            timestamps = new long[capacity];
+            counts = new int[capacity];
+        }
+        dimensions = Math.max(dimensions, this.dimensions);
+        minimums = Arrays.copyOf(minimums, dimensions);
+        maximums = Arrays.copyOf(maximums, dimensions);
+        sums = Arrays.copyOf(sums, dimensions);
+        for (int dimension = this.dimensions; dimension < dimensions; dimension++) {
+            minimums[dimension] = new float[capacity];
+            maximums[dimension] = new float[capacity];
+            sums[dimension] = new double[capacity];
+        }
+        this.dimensions = dimensions;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private int getPhysicalIndex(int index) {
+        int physicalIndex = head + index;
+        if (physicalIndex >= capacity) {
+            physicalIndex -= capacity;
+        }
+        return physicalIndex;
+    }
+
+    /**
+     * Returns the index of the oldest bucket that starts after the specified
+     * timestamp, or the size of the level if there is none
+     */
+    public int indexOfFirstAfter(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getTimestamp(middle) > timestamp) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the start timestamp of the bucket at the specified index
+     */
+    public long getTimestamp(int index) {
+        return timestamps[getPhysicalIndex(index)];
+    }
+
+    /**
+     * Returns the amount of samples in the bucket at the specified index
+     */
+    public int getCount(int index) {
+        return counts[getPhysicalIndex(index)];
+    }
+
+    public float getMinimum(int index, int dimension) {
+        return minimums[dimension][getPhysicalIndex(index)];
+    }
+
+    public float getMaximum(int index, int dimension) {
+        return maximums[dimension][getPhysicalIndex(index)];
+    }
+
+    public float getMean(int index, int dimension) {
+        int physicalIndex = getPhysicalIndex(index);
+        return (float) (sums[dimension][physicalIndex] / counts[physicalIndex]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public long getBucketDuration() {
+        return bucketDuration;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,198 @@
+package net.steppschuh.datalogger.data;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Describes the sources of a session: sensor type and name are mapped to a small
+ * integer id that stays the same for the whole session, together with the
+ * dimension count and value scale of each source. The schema is sent once when
+ * a sensor data request has been accepted, afterwards responses only contain the
+ * session id, source ids and packed values.
+ *
+ * Sources can only be added, so a newer schema of the same session is always
+ * compatible with the ids used before.
+ */
+public class SessionSchema {
+
+    public static final int SOURCE_ID_NOT_SET = -1;
+    public static final int DIMENSIONS_UNKNOWN = 0;
+    public static final float VALUE_SCALE_UNKNOWN = 0;
+
+    private long sessionId;
+    private List<Source> sources;
+
+    public SessionSchema() {
+        sources = new CopyOnWriteArrayList<>();
+    }
+
+    public SessionSchema(long sessionId) {
+        this();
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Returns the id of the specified source, adds it if not yet available
+     */
+    public int addSource(int type, String name) {
+        return addSource(type, name, DIMENSIONS_UNKNOWN, VALUE_SCALE_UNKNOWN);
+    }
+
+    /**
+     * Returns the id of the specified source, adds it if not yet available.
+     * The value scale is the smallest difference between two values that the
+     * source can report, e.g. the resolution of a sensor.
+     */
+    public int addSource(int type, String name, int dimensions, float valueScale) {
+        int sourceId = getSourceId(type, name);
+        if (sourceId == SOURCE_ID_NOT_SET) {
+            sourceId = sources.size();
+            Source source = new Source(sourceId, type, name);
+            source.setDimensions(dimensions);
+            source.setValueScale(valueScale);
+            sources.add(source);
+        }
+        return sourceId;
+    }
+
+    public int getSourceId(int type, String name) {
+        for (Source source : sources) {
+            if (source.getType() == type && source.getName().equals(name)) {
+                return source.getId();
+            }
+        }
+        return SOURCE_ID_NOT_SET;
+    }
+
+    public Source getSource(int sourceId) {
+        if (sourceId < 0 || sourceId >= sources.size()) {
+            return null;
+        }
+        return sources.get(sourceId);
+    }
+
+    /**
+     * Sets the source name and type of the specified batch based on its source id.
+     * Returns false if the id is unknown.
+     */
+    public boolean resolveSource(DataBatch dataBatch) {
+        Source source = getSource(dataBatch.getSourceId());
+        if (source == null) {
+            return false;
+        }
+        dataBatch.setSource(source.getName());
+        dataBatch.setType(source.getType());
+        return true;
+    }
+
+    @JsonIgnore
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    @JsonIgnore
+    public String toJson() {
+        String jsonData = null;
+        try {
+            jsonData = JsonSerialization.toJson(this);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return jsonData;
+    }
+
+    public static SessionSchema fromJson(String json) {
+        try {
+            SessionSchema sessionSchema = JsonSerialization.fromJson(json, SessionSchema.class);
+            return sessionSchema;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public List<Source> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<Source> sources) {
+        this.sources = new CopyOnWriteArrayList<>(sources);
+    }
+
+    public static class Source {
+
+        private int id;
+        private int type;
+        private String name;
+        private int dimensions = DIMENSIONS_UNKNOWN;
+        private float valueScale = VALUE_SCALE_UNKNOWN;
+
+        public Source() {
+        }
+
+        public Source(int id, int type, String name) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+        }
+
+        /**
+         * Getter & Setter
+         */
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public void setType(int type) {
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getDimensions() {
+            return dimensions;
+        }
+
+        public void setDimensions(int dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        public float getValueScale() {
+            return valueScale;
+        }
+
+        public void setValueScale(float valueScale) {
+            this.valueScale = valueScale;
+        }
+
+    }
+
+}
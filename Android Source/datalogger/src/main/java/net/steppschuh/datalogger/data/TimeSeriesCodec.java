@@ -0,0 +1,304 @@
+package net.steppschuh.datalogger.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses the samples of a @DataBatch by making use of the fact that sensor
+ * timestamps are nearly equidistant and that consecutive values of a dimension
+ * are highly correlated.
+ *
+ * Timestamps are encoded as zig-zag varints of their delta-of-delta, which is
+ * 0 (a single byte) for equidistant samples. Values are encoded per dimension
+ * as Gorilla-style bit streams of the XOR between consecutive float bits:
+ * a single 0 bit for repeated values, otherwise only the meaningful bits
+ * between the leading and trailing zeros of the XOR.
+ *
+ * Layout: dimensions (byte), sample count (int), timestamps length (int),
+ * timestamps, followed by the length (int) and bit stream of each dimension.
+ */
+public abstract class TimeSeriesCodec {
+
+    private static final int LEADING_ZEROS_BITS = 5;
+    private static final int MEANINGFUL_BITS_BITS = 5;
+    private static final int LEADING_ZEROS_MAXIMUM = (1 << LEADING_ZEROS_BITS) - 1;
+
+    /**
+     * Returns the amount of bytes that encoding the specified amount
+     * of samples takes in the worst case
+     */
+    public static int getMaximumEncodedSize(int size, int dimensions) {
+        int timestampsSize = size * 10;
+        int valuesSize = (size * (2 + LEADING_ZEROS_BITS + MEANINGFUL_BITS_BITS + 32) + 7) / 8;
+        return 1 + 4 + 4 + timestampsSize + dimensions * (4 + valuesSize);
+    }
+
+    public static void writeSamples(ByteBuffer buffer, DataBatch dataBatch) {
+        int size = dataBatch.getSize();
+        int dimensions = dataBatch.getDimensions();
+        buffer.put((byte) dimensions);
+        buffer.putInt(size);
+        writeTimestamps(buffer, dataBatch);
+
+        // values of each dimension
+        BitWriter bitWriter = new BitWriter(buffer);
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            int lengthPosition = buffer.position();
+            buffer.putInt(0);
+            int previousBits = 0;
+            int previousLeadingZeros = -1;
+            int previousTrailingZeros = 0;
+            for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+                int bits = Float.floatToRawIntBits(dataBatch.getValue(dataIndex, dimension));
+                if (dataIndex == 0) {
+                    bitWriter.write(bits, 32);
+                    previousBits = bits;
+                    continue;
+                }
+
+                int xor = bits ^ previousBits;
+                previousBits = bits;
+                if (xor == 0) {
+                    bitWriter.write(0, 1);
+                    continue;
+                }
+                bitWriter.write(1, 1);
+
+                int leadingZeros = Math.min(Integer.numberOfLeadingZeros(xor), LEADING_ZEROS_MAXIMUM);
+                int trailingZeros = Integer.numberOfTrailingZeros(xor);
+                if (previousLeadingZeros >= 0 && leadingZeros >= previousLeadingZeros && trailingZeros >= previousTrailingZeros) {
+                    // meaningful bits fit into the previous block
+                    bitWriter.write(0, 1);
+                    bitWriter.write(xor >>> previousTrailingZeros, 32 - previousLeadingZeros - previousTrailingZeros);
+                } else {
+                    int meaningfulBits = 32 - leadingZeros - trailingZeros;
+                    bitWriter.write(1, 1);
+                    bitWriter.write(leadingZeros, LEADING_ZEROS_BITS);
+                    bitWriter.write(meaningfulBits - 1, MEANINGFUL_BITS_BITS);
+                    bitWriter.write(xor >>> trailingZeros, meaningfulBits);
+                    previousLeadingZeros = leadingZeros;
+                    previousTrailingZeros = trailingZeros;
+                }
+            }
+            bitWriter.flush();
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+        }
+    }
+
+    /**
+     * Writes the length (int) and the delta-of-delta encoded
+     * timestamps of all samples
+     */
+    public static void writeTimestamps(ByteBuffer buffer, DataBatch dataBatch) {
+        int size = dataBatch.getSize();
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        long previousTimestamp = 0;
+        long previousDelta = 0;
+        for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+            long timestamp = dataBatch.getTimestamp(dataIndex);
+            long delta = timestamp - previousTimestamp;
+            writeVarLong(buffer, encodeZigZag(delta - previousDelta));
+            previousTimestamp = timestamp;
+            previousDelta = dataIndex == 0 ? 0 : delta;
+        }
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+    }
+
+    /**
+     * Decodes the samples and appends them to the specified batch
+     */
+    public static void readSamples(ByteBuffer buffer, DataBatch dataBatch) throws BufferUnderflowException {
+        int dimensions = buffer.get() & 0xFF;
+        int size = buffer.getInt();
+
+        // the sections are decoded side by side, so that samples can be appended one by one
+        TimestampReader timestampReader = new TimestampReader(buffer);
+
+        BitReader[] bitReaders = new BitReader[dimensions];
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            int valuesLength = buffer.getInt();
+            bitReaders[dimension] = new BitReader(buffer.duplicate());
+            buffer.position(buffer.position() + valuesLength);
+        }
+
+        int[] previousBits = new int[dimensions];
+        int[] previousLeadingZeros = new int[dimensions];
+        int[] previousTrailingZeros = new int[dimensions];
+        float[] values = new float[dimensions];
+        for (int dataIndex = 0; dataIndex < size; dataIndex++) {
+            long timestamp = timestampReader.read();
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                BitReader bitReader = bitReaders[dimension];
+                if (dataIndex == 0) {
+                    previousBits[dimension] = (int) bitReader.read(32);
+                } else if (bitReader.read(1) == 1) {
+                    if (bitReader.read(1) == 1) {
+                        previousLeadingZeros[dimension] = (int) bitReader.read(LEADING_ZEROS_BITS);
+                        int meaningfulBits = (int) bitReader.read(MEANINGFUL_BITS_BITS) + 1;
+                        previousTrailingZeros[dimension] = 32 - previousLeadingZeros[dimension] - meaningfulBits;
+                    }
+                    int meaningfulBits = 32 - previousLeadingZeros[dimension] - previousTrailingZeros[dimension];
+                    int xor = (int) bitReader.read(meaningfulBits) << previousTrailingZeros[dimension];
+                    previousBits[dimension] ^= xor;
+                }
+                values[dimension] = Float.intBitsToFloat(previousBits[dimension]);
+            }
+            dataBatch.addData(timestamp, values);
+        }
+    }
+
+    /**
+     * Encodes the samples of the specified batch into a new array
+     */
+    public static byte[] encode(DataBatch dataBatch) {
+        ByteBuffer buffer = BinaryDataCodec.allocate(getMaximumEncodedSize(dataBatch.getSize(), dataBatch.getDimensions()));
+        writeSamples(buffer, dataBatch);
+        byte[] bytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Decodes samples that have been encoded using encode() into a new batch
+     * without capacity limit
+     */
+    public static DataBatch decode(byte[] bytes) throws BufferUnderflowException {
+        DataBatch dataBatch = new DataBatch();
+        dataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+        readSamples(BinaryDataCodec.wrap(bytes), dataBatch);
+        return dataBatch;
+    }
+
+    /**
+     * Varint & zig-zag encoding
+     */
+    public static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static long readVarLong(ByteBuffer buffer) throws BufferUnderflowException {
+        long value = 0;
+        int shift = 0;
+        byte currentByte;
+        do {
+            currentByte = buffer.get();
+            value |= (long) (currentByte & 0x7F) << shift;
+            shift += 7;
+        } while ((currentByte & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Reads timestamps written by writeTimestamps(). The specified buffer
+     * is positioned after the timestamps, so that following sections can
+     * be read while the timestamps are decoded one by one.
+     */
+    public static class TimestampReader {
+
+        private final ByteBuffer buffer;
+        private long previousTimestamp;
+        private long previousDelta;
+        private boolean first = true;
+
+        public TimestampReader(ByteBuffer buffer) throws BufferUnderflowException {
+            int length = buffer.getInt();
+            this.buffer = buffer.duplicate();
+            buffer.position(buffer.position() + length);
+        }
+
+        public long read() throws BufferUnderflowException {
+            long delta = previousDelta + decodeZigZag(readVarLong(buffer));
+            previousTimestamp += delta;
+            previousDelta = first ? 0 : delta;
+            first = false;
+            return previousTimestamp;
+        }
+
+    }
+
+    /**
+     * Writes bits to a buffer, starting with the most significant bit
+     */
+    private static class BitWriter {
+
+        private final ByteBuffer buffer;
+        private int currentByte;
+        private int usedBits;
+
+        private BitWriter(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void write(long value, int bitCount) {
+            while (bitCount > 0) {
+                int chunkBits = Math.min(8 - usedBits, bitCount);
+                int chunk = (int) (value >>> (bitCount - chunkBits)) & ((1 << chunkBits) - 1);
+                currentByte = (currentByte << chunkBits) | chunk;
+                usedBits += chunkBits;
+                bitCount -= chunkBits;
+                if (usedBits == 8) {
+                    buffer.put((byte) currentByte);
+                    currentByte = 0;
+                    usedBits = 0;
+                }
+            }
+        }
+
+        /**
+         * Writes the remaining bits, padded with zeros
+         */
+        private void flush() {
+            if (usedBits > 0) {
+                buffer.put((byte) (currentByte << (8 - usedBits)));
+                currentByte = 0;
+                usedBits = 0;
+            }
+        }
+
+    }
+
+    /**
+     * Reads bits written by a @BitWriter
+     */
+    private static class BitReader {
+
+        private final ByteBuffer buffer;
+        private int currentByte;
+        private int availableBits;
+
+        private BitReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private long read(int bitCount) throws BufferUnderflowException {
+            long value = 0;
+            while (bitCount > 0) {
+                if (availableBits == 0) {
+                    currentByte = buffer.get() & 0xFF;
+                    availableBits = 8;
+                }
+                int chunkBits = Math.min(availableBits, bitCount);
+                int chunk = (currentByte >>> (availableBits - chunkBits)) & ((1 << chunkBits) - 1);
+                value = (value << chunkBits) | chunk;
+                availableBits -= chunkBits;
+                bitCount -= chunkBits;
+            }
+            return value;
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package net.steppschuh.datalogger.data.request;
+
+/**
+ * Paces the responses of a @SensorDataRequestResponseGenerator. While the link
+ * to the requesting node is congested, the interval is doubled, so that fewer
+ * but larger responses are sent. Once it recovers, the interval shrinks back
+ * towards the requested interval.
+ *
+ * The interval never exceeds the maximum interval, which should be the time
+ * it takes to fill the ring of a @DataBatch (see getMaximumInterval()), as
+ * samples would be overwritten before they could be sent otherwise.
+ */
+public class AdaptiveUpdateInterval {
+
+    public static final float CAPACITY_HEADROOM = 0.5f;
+    public static final long MAXIMUM_INTERVAL_NOT_SET = Long.MAX_VALUE;
+
+    private static final int INCREASE_FACTOR = 2;
+    private static final int DECREASE_DIVISOR = 2;
+
+    private long requestedInterval;
+    private long currentInterval;
+
+    public AdaptiveUpdateInterval(long requestedInterval) {
+        setRequestedInterval(requestedInterval);
+    }
+
+    /**
+     * Returns the longest interval that samples can be read at without the
+     * ring of a batch with the specified capacity being filled beyond
+     * @CAPACITY_HEADROOM, given the amount of samples that have been added
+     * during the specified duration
+     */
+    public static long getMaximumInterval(int capacity, int sampleCount, long duration) {
+        if (sampleCount <= 0 || duration <= 0) {
+            return MAXIMUM_INTERVAL_NOT_SET;
+        }
+        return (long) (capacity * CAPACITY_HEADROOM * duration / sampleCount);
+    }
+
+    /**
+     * Updates the current interval based on the state of the link
+     * and returns it
+     */
+    public long update(boolean congested, long maximumInterval) {
+        long interval;
+        if (congested) {
+            interval = Math.max(currentInterval * INCREASE_FACTOR, currentInterval + 1);
+        } else {
+            interval = requestedInterval + (currentInterval - requestedInterval) / DECREASE_DIVISOR;
+        }
+        interval = Math.min(interval, maximumInterval);
+        currentInterval = Math.max(interval, requestedInterval);
+        return currentInterval;
+    }
+
+    public boolean isAdapted() {
+        return currentInterval != requestedInterval;
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public long getRequestedInterval() {
+        return requestedInterval;
+    }
+
+    /**
+     * Sets the requested interval and resets the current interval to it
+     */
+    public void setRequestedInterval(long requestedInterval) {
+        this.requestedInterval = Math.max(0, requestedInterval);
+        currentInterval = this.requestedInterval;
+    }
+
+    public long getCurrentInterval() {
+        return currentInterval;
+    }
+
+}
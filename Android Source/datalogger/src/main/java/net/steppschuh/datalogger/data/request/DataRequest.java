@@ -1,8 +1,8 @@
 package net.steppschuh.datalogger.data.request;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+
+import net.steppschuh.datalogger.data.JsonSerialization;
 
 import java.io.Serializable;
 import java.util.concurrent.TimeUnit;
@@ -14,15 +14,21 @@ public class DataRequest implements Serializable {
     public static final long UPDATE_INTERVAL_NORMAL = 100;
     public static final long UPDATE_INTERVAL_SLOW = 500;
     public static final int TIMESTAMP_NOT_SET = -1;
+    public static final float VALUE_PRECISION_RESOLUTION = 0;
+    public static final float VALUE_PRECISION_FULL = -1;
 
     private String sourceNodeId;
     private String dataSource;
     private long updateInteval;
     private long startTimestamp;
     private long endTimestamp;
+    private String responseFormat;
+    private float valuePrecision;
 
     public DataRequest() {
         updateInteval = UPDATE_INTERVAL_DEFAULT;
+        responseFormat = DataRequestResponse.FORMAT_BINARY;
+        valuePrecision = VALUE_PRECISION_RESOLUTION;
         startTimestamp = System.currentTimeMillis();
         endTimestamp = TIMESTAMP_NOT_SET;
     }
@@ -42,10 +48,7 @@ public class DataRequest implements Serializable {
     public String toJson() {
         String jsonData = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            jsonData = mapper.writeValueAsString(this);
+            jsonData = JsonSerialization.toJson(this);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -54,9 +57,7 @@ public class DataRequest implements Serializable {
 
     public static DataRequest fromJson(String json) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            DataRequest dataRequest = mapper.readValue(json, DataRequest.class);
+            DataRequest dataRequest = JsonSerialization.fromJson(json, DataRequest.class);
             return dataRequest;
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -99,6 +100,31 @@ public class DataRequest implements Serializable {
         this.endTimestamp = endTimestamp;
     }
 
+    /**
+     * Returns the format that responses should be encoded in,
+     * either @DataRequestResponse.FORMAT_BINARY, FORMAT_JSON or FORMAT_JSON_COLUMNS
+     */
+    public String getResponseFormat() {
+        return responseFormat;
+    }
+
+    public void setResponseFormat(String responseFormat) {
+        this.responseFormat = responseFormat;
+    }
+
+    /**
+     * Returns the precision that values should be sent with. Values are sent
+     * as multiples of the sensor resolution for @VALUE_PRECISION_RESOLUTION
+     * and as full floats for @VALUE_PRECISION_FULL.
+     */
+    public float getValuePrecision() {
+        return valuePrecision;
+    }
+
+    public void setValuePrecision(float valuePrecision) {
+        this.valuePrecision = valuePrecision;
+    }
+
     public String getSourceNodeId() {
         return sourceNodeId;
     }
@@ -1,18 +1,36 @@
 package net.steppschuh.datalogger.data.request;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
+import net.steppschuh.datalogger.data.BinaryDataCodec;
 import net.steppschuh.datalogger.data.DataBatch;
+import net.steppschuh.datalogger.data.JsonSerialization;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class DataRequestResponse {
 
+    public static final String FORMAT_BINARY = "binary";
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_JSON_COLUMNS = "json_columns";
+
+    public static final long UPDATE_INTERVAL_NOT_SET = -1;
+
+
     private List<DataBatch> dataBatches;
     private long startTimestamp;
     private long endTimestamp;
+    private long droppedDataCount;
+    private long sessionId;
+    private long updateInterval = UPDATE_INTERVAL_NOT_SET;
 
     public DataRequestResponse() {
     }
@@ -32,21 +50,109 @@ public class DataRequestResponse {
     public String toJson() {
         String jsonData = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            jsonData = mapper.writeValueAsString(this);
+            jsonData = JsonSerialization.toJson(this);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return jsonData;
     }
 
+    /**
+     * Returns the JSON representation with the batches in the
+     * specified @DataBatch JSON layout
+     */
+    public String toJson(String layout) {
+        try {
+            StringWriter writer = new StringWriter();
+            JsonGenerator generator = JsonSerialization.getJsonFactory().createGenerator(writer);
+            writeJson(generator, layout);
+            generator.close();
+            return writer.toString();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     public static DataRequestResponse fromJson(String json) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            DataRequestResponse dataRequestResponse = mapper.readValue(json, DataRequestResponse.class);
+            DataRequestResponse dataRequestResponse = JsonSerialization.fromJson(json, DataRequestResponse.class);
+            return dataRequestResponse;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Encodes the response in the specified format, JSON is meant for debugging.
+     * Use a @DataRequestResponseEncoder when encoding responses repeatedly.
+     */
+    public byte[] encode(String format) {
+        try {
+            return new DataRequestResponseEncoder().encode(this, format);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Streams the response into the specified generator. Produces the same
+     * structure as toJson(), without creating any @Data objects.
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        writeJson(generator, DataBatch.JSON_LAYOUT_ROWS);
+    }
+
+    /**
+     * Streams the response into the specified generator, with the batches
+     * in the specified @DataBatch JSON layout
+     */
+    public void writeJson(JsonGenerator generator, String layout) throws IOException {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("dataBatches");
+        if (dataBatches != null) {
+            for (int batchIndex = 0; batchIndex < dataBatches.size(); batchIndex++) {
+                dataBatches.get(batchIndex).writeJson(generator, layout);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeNumberField("startTimestamp", startTimestamp);
+        generator.writeNumberField("endTimestamp", endTimestamp);
+        generator.writeNumberField("droppedDataCount", droppedDataCount);
+        generator.writeNumberField("sessionId", sessionId);
+        generator.writeNumberField("updateInterval", updateInterval);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Decodes a response that has been encoded in any of the supported formats.
+     * Samples are parsed directly from the specified bytes into the columns
+     * of the batches, without creating a String or any @Data objects.
+     */
+    public static DataRequestResponse decode(byte[] data) {
+        if (BinaryDataCodec.isEncoded(data)) {
+            return fromBytes(data);
+        }
+        return fromJson(data);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON using a streaming parser
+     */
+    public static DataRequestResponse fromJson(byte[] json) {
+        return fromJson(json, 0, json.length);
+    }
+
+    /**
+     * Parses the specified range of UTF-8 encoded JSON using a streaming parser
+     */
+    public static DataRequestResponse fromJson(byte[] json, int offset, int length) {
+        try {
+            JsonParser parser = JsonSerialization.getJsonFactory().createParser(json, offset, length);
+            DataRequestResponse dataRequestResponse = readJson(parser);
+            parser.close();
             return dataRequestResponse;
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -54,6 +160,120 @@ public class DataRequestResponse {
         return null;
     }
 
+    public static DataRequestResponse readJson(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Response is not a JSON object");
+        }
+        DataRequestResponse dataRequestResponse = new DataRequestResponse();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "dataBatches":
+                    if (token == JsonToken.START_ARRAY) {
+                        List<DataBatch> dataBatches = new ArrayList<>();
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            dataBatches.add(DataBatch.readJson(parser));
+                        }
+                        dataRequestResponse.setDataBatches(dataBatches);
+                    }
+                    break;
+                case "startTimestamp":
+                    dataRequestResponse.setStartTimestamp(parser.getLongValue());
+                    break;
+                case "endTimestamp":
+                    dataRequestResponse.setEndTimestamp(parser.getLongValue());
+                    break;
+                case "droppedDataCount":
+                    dataRequestResponse.setDroppedDataCount(parser.getLongValue());
+                    break;
+                case "sessionId":
+                    dataRequestResponse.setSessionId(parser.getLongValue());
+                    break;
+                case "updateInterval":
+                    dataRequestResponse.setUpdateInterval(parser.getLongValue());
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return dataRequestResponse;
+    }
+
+    /**
+     * Encodes the response using the @BinaryDataCodec. After the header, the
+     * timestamps, dropped data count, session id and update interval are
+     * followed by the amount of batches and each batch prefixed with its length
+     * in bytes. Samples are compressed with the @TimeSeriesCodec, or quantized
+     * if the batch has a value scale.
+     */
+    @JsonIgnore
+    public byte[] toBytes() {
+        ByteBuffer buffer = BinaryDataCodec.allocate(getMaximumEncodedSize());
+        writeBytes(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Returns the amount of bytes that writeBytes() needs in the worst case
+     */
+    @JsonIgnore
+    public int getMaximumEncodedSize() {
+        int batchCount = dataBatches != null ? dataBatches.size() : 0;
+        int size = BinaryDataCodec.HEADER_SIZE + 5 * 8 + 4;
+        for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
+            size += 4 + BinaryDataCodec.getMaximumEncodedSize(dataBatches.get(batchIndex), getBinaryEncoding(dataBatches.get(batchIndex)));
+        }
+        return size;
+    }
+
+    /**
+     * Writes the binary encoding of the response into the specified buffer,
+     * starting at its current position
+     */
+    public void writeBytes(ByteBuffer buffer) {
+        int batchCount = dataBatches != null ? dataBatches.size() : 0;
+        BinaryDataCodec.writeHeader(buffer);
+        buffer.putLong(startTimestamp);
+        buffer.putLong(endTimestamp);
+        buffer.putLong(droppedDataCount);
+        buffer.putLong(sessionId);
+        buffer.putLong(updateInterval);
+        buffer.putInt(batchCount);
+        for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
+            int lengthPosition = buffer.position();
+            buffer.putInt(0);
+            DataBatch dataBatch = dataBatches.get(batchIndex);
+            BinaryDataCodec.writeDataBatch(buffer, dataBatch, getBinaryEncoding(dataBatch));
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+        }
+    }
+
+    private static byte getBinaryEncoding(DataBatch dataBatch) {
+        if (dataBatch.getValueScale() > 0) {
+            return BinaryDataCodec.ENCODING_QUANTIZED;
+        }
+        return BinaryDataCodec.ENCODING_TIME_SERIES;
+    }
+
+    /**
+     * Decodes all batches of a binary response, use
+     * a @LazyDataRequestResponse to decode only some of them
+     */
+    public static DataRequestResponse fromBytes(byte[] bytes) {
+        try {
+            LazyDataRequestResponse lazyDataRequestResponse = LazyDataRequestResponse.fromBytes(bytes);
+            if (lazyDataRequestResponse == null) {
+                return null;
+            }
+            return lazyDataRequestResponse.toDataRequestResponse();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     public List<DataBatch> getDataBatches() {
         return dataBatches;
     }
@@ -77,4 +297,35 @@ public class DataRequestResponse {
     public void setEndTimestamp(long endTimestamp) {
         this.endTimestamp = endTimestamp;
     }
+
+    /**
+     * Returns the session id of the @SessionSchema that resolves the source ids
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Returns the interval that the responding node currently sends responses
+     * at, which may be longer than the requested one if the link is congested
+     */
+    public long getUpdateInterval() {
+        return updateInterval;
+    }
+
+    public void setUpdateInterval(long updateInterval) {
+        this.updateInterval = updateInterval;
+    }
+
+    public long getDroppedDataCount() {
+        return droppedDataCount;
+    }
+
+    public void setDroppedDataCount(long droppedDataCount) {
+        this.droppedDataCount = droppedDataCount;
+    }
 }
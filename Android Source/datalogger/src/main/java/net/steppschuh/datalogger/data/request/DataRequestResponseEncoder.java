@@ -0,0 +1,64 @@
+package net.steppschuh.datalogger.data.request;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import net.steppschuh.datalogger.data.BinaryDataCodec;
+import net.steppschuh.datalogger.data.DataBatch;
+import net.steppschuh.datalogger.data.JsonSerialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes @DataRequestResponse instances into buffers that are re-used and only
+ * grow when needed. JSON is streamed through a generator directly into bytes,
+ * so the only allocation per response is the array that gets sent.
+ *
+ * Not thread-safe, the encoder should be owned by the thread that sends responses.
+ */
+public class DataRequestResponseEncoder {
+
+    public static final int BUFFER_SIZE_INITIAL = 16 * 1024;
+
+    private ByteBuffer binaryBuffer;
+    private ByteArrayOutputStream jsonBuffer;
+
+    public DataRequestResponseEncoder() {
+        binaryBuffer = BinaryDataCodec.allocate(BUFFER_SIZE_INITIAL);
+        jsonBuffer = new ByteArrayOutputStream(BUFFER_SIZE_INITIAL);
+    }
+
+    /**
+     * Encodes the response in the specified format, the returned
+     * array is not referenced by the encoder afterwards
+     */
+    public byte[] encode(DataRequestResponse dataRequestResponse, String format) throws IOException {
+        if (DataRequestResponse.FORMAT_JSON.equals(format)) {
+            return encodeJson(dataRequestResponse, DataBatch.JSON_LAYOUT_ROWS);
+        } else if (DataRequestResponse.FORMAT_JSON_COLUMNS.equals(format)) {
+            return encodeJson(dataRequestResponse, DataBatch.JSON_LAYOUT_COLUMNS);
+        }
+        return encodeBinary(dataRequestResponse);
+    }
+
+    private byte[] encodeBinary(DataRequestResponse dataRequestResponse) {
+        int maximumSize = dataRequestResponse.getMaximumEncodedSize();
+        if (binaryBuffer.capacity() < maximumSize) {
+            binaryBuffer = BinaryDataCodec.allocate(Math.max(maximumSize, binaryBuffer.capacity() * 2));
+        }
+        binaryBuffer.clear();
+        dataRequestResponse.writeBytes(binaryBuffer);
+        return Arrays.copyOf(binaryBuffer.array(), binaryBuffer.position());
+    }
+
+    private byte[] encodeJson(DataRequestResponse dataRequestResponse, String layout) throws IOException {
+        jsonBuffer.reset();
+        JsonGenerator generator = JsonSerialization.getJsonFactory().createGenerator(jsonBuffer);
+        dataRequestResponse.writeJson(generator, layout);
+        generator.close();
+        return jsonBuffer.toByteArray();
+    }
+
+}
@@ -0,0 +1,214 @@
+package net.steppschuh.datalogger.data.request;
+
+import net.steppschuh.datalogger.data.BinaryDataCodec;
+import net.steppschuh.datalogger.data.DataBatch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A @DataRequestResponse that only decodes the samples of a batch when needed.
+ * Creating it only reads the response fields and the headers of all batches,
+ * which are located using the length that prefixes each encoded batch.
+ *
+ * Until decodeDataBatch() has been called, the batches returned by getDataBatch()
+ * only contain type, source, source id and capacity. Batches are decoded into
+ * the same instance, so that a resolved source is kept.
+ */
+public class LazyDataRequestResponse {
+
+    private static final int POSITION_DECODED = -1;
+
+    private ByteBuffer buffer;
+    private byte version;
+    private long startTimestamp;
+    private long endTimestamp;
+    private long droppedDataCount;
+    private long sessionId;
+    private long updateInterval = DataRequestResponse.UPDATE_INTERVAL_NOT_SET;
+
+    private DataBatch[] dataBatches;
+    private byte[] sampleEncodings;
+    private int[] samplesPositions;
+    private int[] sampleCounts;
+
+    private LazyDataRequestResponse() {
+    }
+
+    /**
+     * Decodes a response that has been encoded in any of the supported formats.
+     * Only binary responses can be decoded lazily, batches of JSON responses
+     * are decoded right away.
+     */
+    public static LazyDataRequestResponse decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        return decode(BinaryDataCodec.wrap(data));
+    }
+
+    /**
+     * Decodes the remaining bytes of the specified heap buffer, which are
+     * referenced instead of copied until all batches have been decoded
+     */
+    public static LazyDataRequestResponse decode(ByteBuffer data) {
+        if (BinaryDataCodec.isEncoded(data)) {
+            return fromBuffer(data);
+        }
+        DataRequestResponse dataRequestResponse = DataRequestResponse.fromJson(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        if (dataRequestResponse == null) {
+            return null;
+        }
+        return fromDataRequestResponse(dataRequestResponse);
+    }
+
+    public static LazyDataRequestResponse fromBytes(byte[] bytes) {
+        return fromBuffer(BinaryDataCodec.wrap(bytes));
+    }
+
+    private static LazyDataRequestResponse fromBuffer(ByteBuffer data) {
+        try {
+            ByteBuffer buffer = data.slice().order(BinaryDataCodec.BYTE_ORDER);
+            LazyDataRequestResponse response = new LazyDataRequestResponse();
+            response.buffer = buffer;
+            response.version = BinaryDataCodec.readHeader(buffer);
+            response.startTimestamp = buffer.getLong();
+            response.endTimestamp = buffer.getLong();
+            response.droppedDataCount = buffer.getLong();
+            response.sessionId = buffer.getLong();
+            if (response.version >= 2) {
+                response.updateInterval = buffer.getLong();
+            }
+
+            int batchCount = buffer.getInt();
+            response.allocateBatches(batchCount);
+            for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
+                int batchSize = buffer.getInt();
+                int batchEndPosition = buffer.position() + batchSize;
+                DataBatch dataBatch = new DataBatch();
+                response.sampleEncodings[batchIndex] = BinaryDataCodec.readDataBatchHeader(buffer, response.version, dataBatch);
+                response.samplesPositions[batchIndex] = buffer.position();
+                response.sampleCounts[batchIndex] = BinaryDataCodec.peekSampleCount(buffer);
+                response.dataBatches[batchIndex] = dataBatch;
+                buffer.position(batchEndPosition);
+            }
+            return response;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Wraps a response of which all batches have already been decoded
+     */
+    public static LazyDataRequestResponse fromDataRequestResponse(DataRequestResponse dataRequestResponse) {
+        LazyDataRequestResponse response = new LazyDataRequestResponse();
+        response.startTimestamp = dataRequestResponse.getStartTimestamp();
+        response.endTimestamp = dataRequestResponse.getEndTimestamp();
+        response.droppedDataCount = dataRequestResponse.getDroppedDataCount();
+        response.sessionId = dataRequestResponse.getSessionId();
+        response.updateInterval = dataRequestResponse.getUpdateInterval();
+
+        List<DataBatch> dataBatches = dataRequestResponse.getDataBatches();
+        int batchCount = dataBatches != null ? dataBatches.size() : 0;
+        response.allocateBatches(batchCount);
+        for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
+            DataBatch dataBatch = dataBatches.get(batchIndex);
+            response.dataBatches[batchIndex] = dataBatch;
+            response.samplesPositions[batchIndex] = POSITION_DECODED;
+            response.sampleCounts[batchIndex] = dataBatch.getSize();
+        }
+        return response;
+    }
+
+    private void allocateBatches(int batchCount) {
+        dataBatches = new DataBatch[batchCount];
+        sampleEncodings = new byte[batchCount];
+        samplesPositions = new int[batchCount];
+        sampleCounts = new int[batchCount];
+    }
+
+    /**
+     * Decodes the samples of the specified batch if not done yet
+     * and returns the batch
+     */
+    public DataBatch decodeDataBatch(int batchIndex) throws Exception {
+        DataBatch dataBatch = dataBatches[batchIndex];
+        if (samplesPositions[batchIndex] == POSITION_DECODED) {
+            return dataBatch;
+        }
+        ByteBuffer samplesBuffer = buffer.duplicate().order(BinaryDataCodec.BYTE_ORDER);
+        samplesBuffer.position(samplesPositions[batchIndex]);
+        BinaryDataCodec.readSamples(samplesBuffer, dataBatch, sampleEncodings[batchIndex]);
+        samplesPositions[batchIndex] = POSITION_DECODED;
+        return dataBatch;
+    }
+
+    public boolean isDecoded(int batchIndex) {
+        return samplesPositions[batchIndex] == POSITION_DECODED;
+    }
+
+    /**
+     * Decodes all remaining batches
+     */
+    public DataRequestResponse toDataRequestResponse() throws Exception {
+        List<DataBatch> decodedDataBatches = new ArrayList<>(dataBatches.length);
+        for (int batchIndex = 0; batchIndex < dataBatches.length; batchIndex++) {
+            decodedDataBatches.add(decodeDataBatch(batchIndex));
+        }
+        DataRequestResponse dataRequestResponse = new DataRequestResponse();
+        dataRequestResponse.setDataBatches(decodedDataBatches);
+        dataRequestResponse.setStartTimestamp(startTimestamp);
+        dataRequestResponse.setEndTimestamp(endTimestamp);
+        dataRequestResponse.setDroppedDataCount(droppedDataCount);
+        dataRequestResponse.setSessionId(sessionId);
+        dataRequestResponse.setUpdateInterval(updateInterval);
+        return dataRequestResponse;
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public int getBatchCount() {
+        return dataBatches.length;
+    }
+
+    /**
+     * Returns the batch at the specified index, which doesn't
+     * contain any samples unless it has been decoded
+     */
+    public DataBatch getDataBatch(int batchIndex) {
+        return dataBatches[batchIndex];
+    }
+
+    /**
+     * Returns the amount of samples of the specified batch,
+     * which is available without decoding it
+     */
+    public int getSampleCount(int batchIndex) {
+        return sampleCounts[batchIndex];
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public long getEndTimestamp() {
+        return endTimestamp;
+    }
+
+    public long getDroppedDataCount() {
+        return droppedDataCount;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public long getUpdateInterval() {
+        return updateInterval;
+    }
+
+}
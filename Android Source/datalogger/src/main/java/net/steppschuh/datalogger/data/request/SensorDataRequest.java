@@ -1,7 +1,6 @@
 package net.steppschuh.datalogger.data.request;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import net.steppschuh.datalogger.data.JsonSerialization;
 
 import java.util.List;
 
@@ -24,9 +23,7 @@ public class SensorDataRequest extends DataRequest {
 
     public static SensorDataRequest fromJson(String json) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            SensorDataRequest dataRequest = mapper.readValue(json, SensorDataRequest.class);
+            SensorDataRequest dataRequest = JsonSerialization.fromJson(json, SensorDataRequest.class);
             return dataRequest;
         } catch (Exception ex) {
             ex.printStackTrace();
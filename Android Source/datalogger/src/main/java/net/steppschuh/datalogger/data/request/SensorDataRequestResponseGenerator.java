@@ -1,19 +1,29 @@
 package net.steppschuh.datalogger.data.request;
 
-import com.google.android.gms.wearable.Node;
-
+import android.hardware.Sensor;
 import android.os.Handler;
-import android.os.Looper;
+import android.os.HandlerThread;
 import android.util.Log;
 
 import net.steppschuh.datalogger.MobileApp;
 import net.steppschuh.datalogger.data.DataBatch;
+import net.steppschuh.datalogger.data.DataReadResult;
+import net.steppschuh.datalogger.data.SessionSchema;
 import net.steppschuh.datalogger.messaging.GoogleApiMessenger;
+import net.steppschuh.datalogger.messaging.MessageSendQueue;
 import net.steppschuh.datalogger.messaging.handler.MessageHandler;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Generates responses for a @SensorDataRequest on its own @HandlerThread.
+ * The session schema, read cursors and exception count are only accessed
+ * from that thread, requests are handed over by posting to it.
+ */
 public class SensorDataRequestResponseGenerator {
 
     public static final String TAG = SensorDataRequestResponseGenerator.class.getSimpleName();
@@ -21,17 +31,30 @@ public class SensorDataRequestResponseGenerator {
     private static final int MAXIMUM_EXCEPTION_COUNT = 10;
 
     private MobileApp app;
-    private SensorDataRequest sensorDataRequest;
+    private volatile SensorDataRequest sensorDataRequest;
     private long lastEndTimestamp;
-    private Handler updateHandler;
+    private Map<Integer, Long> readCursors;
+    private SessionSchema sessionSchema;
+    private boolean sessionSchemaChanged;
+    private DataRequestResponseEncoder dataRequestResponseEncoder;
+    private AdaptiveUpdateInterval adaptiveUpdateInterval;
+    private long maximumUpdateInterval;
+    private HandlerThread updateThread;
+    private volatile Handler updateHandler;
     private Runnable updateRunnable;
+    private Runnable sendSessionSchemaRunnable;
 
     private int exceptionCount = 0;
 
     public SensorDataRequestResponseGenerator(MobileApp app) {
         this.app = app;
         lastEndTimestamp = DataRequest.TIMESTAMP_NOT_SET;
+        readCursors = new HashMap<>();
+        sessionSchema = new SessionSchema(System.currentTimeMillis());
+        dataRequestResponseEncoder = new DataRequestResponseEncoder();
+        adaptiveUpdateInterval = new AdaptiveUpdateInterval(DataRequest.UPDATE_INTERVAL_DEFAULT);
         updateRunnable = getDataRequestResponseRunnable();
+        sendSessionSchemaRunnable = getSendSessionSchemaRunnable();
     }
 
     public void handleRequest(SensorDataRequest sensorDataRequest) {
@@ -39,7 +62,7 @@ public class SensorDataRequestResponseGenerator {
 
         Log.v(TAG, "Handling new sensor data request from " + sensorDataRequest.getSourceNodeId());
 
-        if (shouldStopGeneratingRequestResponses()) {
+        if (hasRequestEnded()) {
             unregisterRequiredSensorEventListeners();
             stopGeneratingRequestResponses();
         } else {
@@ -48,36 +71,65 @@ public class SensorDataRequestResponseGenerator {
         }
     }
 
-    public void startGeneratingRequestResponses() {
+    private Runnable getSendSessionSchemaRunnable() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sendSessionSchema();
+                } catch (Exception ex) {
+                    exceptionCount += 1;
+                    Log.w(TAG, "Unable to send session schema: " + ex.getMessage());
+                }
+            }
+        };
+    }
+
+    /**
+     * Starts the update thread if it isn't running yet and sends the session
+     * schema of the current request on it, before the next response
+     */
+    public synchronized void startGeneratingRequestResponses() {
         if (isGeneratingRequestResponses()) {
+            updateHandler.post(sendSessionSchemaRunnable);
             return;
         }
         Log.v(TAG, "Starting to generate request responses every " + sensorDataRequest.getUpdateInteval() + "ms");
-        if (Looper.myLooper() == null) {
-            Looper.prepare();
-        }
-        updateHandler = new Handler();
+        updateThread = new HandlerThread(TAG);
+        updateThread.start();
+        updateHandler = new Handler(updateThread.getLooper());
+        updateHandler.post(sendSessionSchemaRunnable);
         updateHandler.postDelayed(updateRunnable, 1);
-        Looper.loop();
     }
 
-    public void stopGeneratingRequestResponses() {
+    public synchronized void stopGeneratingRequestResponses() {
         if (!isGeneratingRequestResponses()) {
             return;
         }
         Log.v(TAG, "Stopping to generate request responses");
         updateHandler.removeCallbacks(updateRunnable);
+        updateHandler.removeCallbacks(sendSessionSchemaRunnable);
         updateHandler = null;
+        // pending callbacks have been removed, quitSafely() would require API 18
+        updateThread.quit();
+        updateThread = null;
     }
 
     public boolean isGeneratingRequestResponses() {
         return updateHandler != null;
     }
 
-    public boolean shouldStopGeneratingRequestResponses() {
+    /**
+     * Should only be called from the update thread, as it reads the exception count
+     */
+    private boolean shouldStopGeneratingRequestResponses() {
         if (exceptionCount >= MAXIMUM_EXCEPTION_COUNT) {
             return true;
         }
+        return hasRequestEnded();
+    }
+
+    private boolean hasRequestEnded() {
         if (sensorDataRequest.getEndTimestamp() == DataRequest.TIMESTAMP_NOT_SET) {
             return false;
         }
@@ -87,6 +139,37 @@ public class SensorDataRequestResponseGenerator {
         return true;
     }
 
+    /**
+     * Adds the requested sensors to the @sessionSchema and sends it to the
+     * requesting node, so that responses only need to contain source ids
+     * and values
+     */
+    private void sendSessionSchema() {
+        for (Integer sensorType : sensorDataRequest.getSensorTypes()) {
+            DataBatch dataBatch = app.getSensorDataManager().getDataBatch(sensorType);
+            if (dataBatch == null) {
+                continue;
+            }
+            addSessionSchemaSource(sensorType, dataBatch);
+        }
+        app.getGoogleApiMessenger().sendMessageToNode(MessageHandler.PATH_SENSOR_DATA_SCHEMA, sessionSchema.toJson(), sensorDataRequest.getSourceNodeId());
+        sessionSchemaChanged = false;
+    }
+
+    private int addSessionSchemaSource(int sensorType, DataBatch dataBatch) {
+        int sourceId = sessionSchema.getSourceId(sensorType, dataBatch.getSource());
+        if (sourceId != SessionSchema.SOURCE_ID_NOT_SET) {
+            return sourceId;
+        }
+        float valueScale = SessionSchema.VALUE_SCALE_UNKNOWN;
+        Sensor sensor = app.getSensorDataManager().getSensorManager().getDefaultSensor(sensorType);
+        if (sensor != null) {
+            valueScale = sensor.getResolution();
+        }
+        sessionSchemaChanged = true;
+        return sessionSchema.addSource(sensorType, dataBatch.getSource(), dataBatch.getDimensions(), valueScale);
+    }
+
     private void registerRequiredSensorEventListeners() {
         for (Integer sensorType : sensorDataRequest.getSensorTypes()) {
             app.getSensorDataManager().registerSensorEventListener(sensorType);
@@ -103,10 +186,15 @@ public class SensorDataRequestResponseGenerator {
         return new Runnable() {
             @Override
             public void run() {
+                boolean congested = false;
                 try {
+                    if (adaptiveUpdateInterval.getRequestedInterval() != sensorDataRequest.getUpdateInteval()) {
+                        adaptiveUpdateInterval.setRequestedInterval(sensorDataRequest.getUpdateInteval());
+                    }
+                    congested = isLinkCongested();
+
                     if (!sensorDataRequest.getSourceNodeId().equals(GoogleApiMessenger.DEFAULT_NODE_ID)) {
-                        Node sourceNode = app.getGoogleApiMessenger().getLastConnectedNodeById(sensorDataRequest.getSourceNodeId());
-                        if (sourceNode == null) {
+                        if (!app.getGoogleApiMessenger().getTransport().isReachable(sensorDataRequest.getSourceNodeId())) {
                             app.getGoogleApiMessenger().updateLastConnectedNodes();
                             throw new Exception("Source node hasn't connected recently");
                         }
@@ -114,17 +202,23 @@ public class SensorDataRequestResponseGenerator {
 
                     // generate & send request response
                     DataRequestResponse dataRequestResponse = generateDataRequestResponse();
-                    String json = dataRequestResponse.toString();
-                    app.getGoogleApiMessenger().sendMessageToNode(MessageHandler.PATH_SENSOR_DATA_REQUEST_RESPONSE, json, sensorDataRequest.getSourceNodeId());
+                    if (sessionSchemaChanged) {
+                        sendSessionSchema();
+                    }
+                    byte[] data = dataRequestResponseEncoder.encode(dataRequestResponse, sensorDataRequest.getResponseFormat());
+                    app.getGoogleApiMessenger().sendMessageToNode(MessageHandler.PATH_SENSOR_DATA_REQUEST_RESPONSE, data, sensorDataRequest.getSourceNodeId());
                     exceptionCount = 0;
                 } catch (Exception ex) {
                     exceptionCount += 1;
+                    congested = true;
                     Log.w(TAG, "Unable to send request response: " + ex.getMessage());
                 }
 
-                // re-invoke runnable after delay
-                if (isGeneratingRequestResponses() && !shouldStopGeneratingRequestResponses()) {
-                    updateHandler.postDelayed(updateRunnable, sensorDataRequest.getUpdateInteval());
+                // re-invoke runnable after an interval that matches the link
+                long updateInterval = adaptiveUpdateInterval.update(congested, maximumUpdateInterval);
+                Handler currentUpdateHandler = updateHandler;
+                if (currentUpdateHandler != null && !shouldStopGeneratingRequestResponses()) {
+                    currentUpdateHandler.postDelayed(updateRunnable, updateInterval);
                 } else {
                     stopGeneratingRequestResponses();
                 }
@@ -132,29 +226,91 @@ public class SensorDataRequestResponseGenerator {
         };
     }
 
+    /**
+     * Returns true if the previous response hasn't been sent yet
+     * or took longer than the current interval to be sent
+     */
+    private boolean isLinkCongested() {
+        String nodeId = sensorDataRequest.getSourceNodeId();
+        MessageSendQueue messageSendQueue = app.getGoogleApiMessenger().getMessageSendQueue();
+        if (messageSendQueue.getQueueDepth(nodeId) > 0) {
+            return true;
+        }
+        long lastSendLatency = TimeUnit.NANOSECONDS.toMillis(messageSendQueue.getLastSendLatency(nodeId));
+        return lastSendLatency > adaptiveUpdateInterval.getCurrentInterval();
+    }
+
+    /**
+     * Returns the precision that values of the specified source should be
+     * encoded with, based on the requested precision
+     */
+    private float getValueScale(SessionSchema.Source source) {
+        float valuePrecision = sensorDataRequest.getValuePrecision();
+        if (valuePrecision > 0) {
+            return valuePrecision;
+        }
+        if (valuePrecision == DataRequest.VALUE_PRECISION_RESOLUTION && source != null) {
+            return source.getValueScale();
+        }
+        return DataBatch.VALUE_SCALE_NOT_SET;
+    }
+
     private DataRequestResponse generateDataRequestResponse() {
         // get all required data batches
         List<DataBatch> dataBatches = new ArrayList<>();
+        long droppedDataCount = 0;
+        long endTimestamp = System.currentTimeMillis();
+        maximumUpdateInterval = AdaptiveUpdateInterval.MAXIMUM_INTERVAL_NOT_SET;
         for (Integer sensorType : sensorDataRequest.getSensorTypes()) {
             DataBatch existingDataBatch = app.getSensorDataManager().getDataBatch(sensorType);
             if (existingDataBatch == null) {
                 continue;
             }
 
-            DataBatch dataBatch = new DataBatch(existingDataBatch);
+            // only copy the data that hasn't been sent yet
+            Long readCursor = readCursors.get(sensorType);
+            if (readCursor == null) {
+                readCursor = existingDataBatch.getOldestSequence();
+            }
+            DataReadResult readResult = existingDataBatch.readSince(readCursor);
+            readCursors.put(sensorType, readResult.getNextCursor());
+
+            if (readResult.hasDroppedData()) {
+                Log.w(TAG, readResult.getDroppedCount() + " samples of " + existingDataBatch.getSource() + " have been overwritten before they could be sent");
+                droppedDataCount += readResult.getDroppedCount();
+            }
 
-            // trim batch to only contain the new data
-            dataBatch.setDataList(dataBatch.getDataSince(lastEndTimestamp));
+            // limit the interval to the time it takes to fill the ring
+            if (lastEndTimestamp != DataRequest.TIMESTAMP_NOT_SET) {
+                int addedSampleCount = readResult.getDataBatch().getSize() + (int) readResult.getDroppedCount();
+                long maximumInterval = AdaptiveUpdateInterval.getMaximumInterval(existingDataBatch.getCapacity(), addedSampleCount, endTimestamp - lastEndTimestamp);
+                maximumUpdateInterval = Math.min(maximumUpdateInterval, maximumInterval);
+            }
+
+            // reference the source by id instead of sending its name, sources
+            // that weren't available when the schema has been sent are sent
+            // in full until the updated schema has been sent
+            DataBatch dataBatch = readResult.getDataBatch();
+            boolean sourceKnown = sessionSchema.getSourceId(sensorType, dataBatch.getSource()) != SessionSchema.SOURCE_ID_NOT_SET;
+            int sourceId = addSessionSchemaSource(sensorType, dataBatch);
+            dataBatch.setSourceId(sourceId);
+            dataBatch.setValueScale(getValueScale(sessionSchema.getSource(sourceId)));
+            if (sourceKnown) {
+                dataBatch.setSource(null);
+            }
             dataBatches.add(dataBatch);
         }
 
         // create response object
         DataRequestResponse dataRequestResponse = new DataRequestResponse(dataBatches);
+        dataRequestResponse.setSessionId(sessionSchema.getSessionId());
+        dataRequestResponse.setDroppedDataCount(droppedDataCount);
         dataRequestResponse.setStartTimestamp(lastEndTimestamp);
-        dataRequestResponse.setEndTimestamp(System.currentTimeMillis());
+        dataRequestResponse.setEndTimestamp(endTimestamp);
+        dataRequestResponse.setUpdateInterval(adaptiveUpdateInterval.getCurrentInterval());
 
         // update last used timestamp
-        lastEndTimestamp = System.currentTimeMillis();
+        lastEndTimestamp = endTimestamp;
         return dataRequestResponse;
     }
 
@@ -0,0 +1,122 @@
+package net.steppschuh.datalogger.logging;
+
+import android.os.Debug;
+import android.util.Log;
+
+/**
+ * Counts the objects that the current thread allocates between start() and stop()
+ * and sums them up for every @windowSize events. Used to verify that hot paths
+ * stay allocation free. Relies on Debug.startAllocCounting(), which slows down
+ * all allocations, so it should only be enabled while debugging.
+ *
+ * The Debug allocation counters are deprecated, but there is no replacement
+ * that counts the allocations of a single thread.
+ */
+@SuppressWarnings("deprecation")
+public class AllocationTracker {
+
+    private static final String TAG = AllocationTracker.class.getSimpleName();
+
+    public static final int WINDOW_SIZE_DEFAULT = 1000;
+    public static final int ALLOCATION_COUNT_NOT_SET = -1;
+
+    private String key;
+    private int windowSize = WINDOW_SIZE_DEFAULT;
+
+    private int startAllocationCount;
+    private int windowEventCount;
+    private int windowAllocationCount;
+
+    private volatile int lastWindowAllocationCount = ALLOCATION_COUNT_NOT_SET;
+    private volatile long totalEventCount;
+    private volatile long totalAllocationCount;
+
+    public AllocationTracker(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Enables allocation counting for the whole process
+     */
+    public static void startCounting() {
+        Debug.startAllocCounting();
+    }
+
+    public static void stopCounting() {
+        Debug.stopAllocCounting();
+    }
+
+    public void start() {
+        startAllocationCount = Debug.getThreadAllocCount();
+    }
+
+    public void stop() {
+        windowAllocationCount += Debug.getThreadAllocCount() - startAllocationCount;
+        windowEventCount++;
+        if (windowEventCount < windowSize) {
+            return;
+        }
+
+        // window completed, logging happens outside of the tracked section
+        lastWindowAllocationCount = windowAllocationCount;
+        totalAllocationCount += windowAllocationCount;
+        totalEventCount += windowEventCount;
+        windowAllocationCount = 0;
+        windowEventCount = 0;
+        if (lastWindowAllocationCount > 0) {
+            Log.w(TAG, toString());
+        }
+    }
+
+    public void reset() {
+        windowEventCount = 0;
+        windowAllocationCount = 0;
+        lastWindowAllocationCount = ALLOCATION_COUNT_NOT_SET;
+        totalEventCount = 0;
+        totalAllocationCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (key != null && key.length() > 0) {
+            sb.append(key).append(": ");
+        }
+        sb.append(lastWindowAllocationCount).append(" allocations per ");
+        sb.append(windowSize).append(" events (");
+        sb.append(totalAllocationCount).append(" allocations in ");
+        sb.append(totalEventCount).append(" events)");
+        return sb.toString();
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Returns the amount of allocations in the last completed window
+     */
+    public int getLastWindowAllocationCount() {
+        return lastWindowAllocationCount;
+    }
+
+    public long getTotalEventCount() {
+        return totalEventCount;
+    }
+
+    public long getTotalAllocationCount() {
+        return totalAllocationCount;
+    }
+
+}
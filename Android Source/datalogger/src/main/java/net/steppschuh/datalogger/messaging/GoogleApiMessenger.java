@@ -5,18 +5,17 @@ import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
 import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Message;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
 import net.steppschuh.datalogger.MobileApp;
-import net.steppschuh.datalogger.messaging.handler.MessageHandler;
 import net.steppschuh.datalogger.status.GoogleApiStatus;
 import net.steppschuh.datalogger.status.Status;
 import net.steppschuh.datalogger.status.StatusUpdateEmitter;
@@ -27,17 +26,25 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
-public class GoogleApiMessenger implements GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener, StatusUpdateEmitter {
+/**
+ * Sends and receives messages. By default, messages are sent to other nodes using
+ * the Wearable APIs, which makes the messenger a @Transport itself. Queueing,
+ * compression and local delivery are done by the @TransportMessenger, which
+ * can use a different @Transport to exchange messages without Play Services.
+ */
+public class GoogleApiMessenger implements Transport, MessageApi.MessageListener, GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener, StatusUpdateEmitter {
 
     private static final String TAG = GoogleApiMessenger.class.getSimpleName();
     public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
-    public static final String DEFAULT_NODE_ID = "LOCAL_NODE";
+    public static final String DEFAULT_NODE_ID = TransportMessenger.DEFAULT_NODE_ID;
 
     private GoogleApiStatus status = new GoogleApiStatus();
     private StatusUpdateHandler statusUpdateHandler;
 
     private MobileApp app;
     private GoogleApiClient googleApiClient;
+    private TransportMessenger transportMessenger;
+    private volatile Transport.MessageListener messageListener;
     private boolean wearableApiAvailable;
 
     public GoogleApiMessenger(MobileApp app) {
@@ -51,6 +58,7 @@ public class GoogleApiMessenger implements GoogleApiClient.ConnectionCallbacks,
                 .addConnectionCallbacks(this)
                 .addApi(Wearable.API)
                 .build();
+        transportMessenger = new TransportMessenger(this);
         updateLocalNode();
         setupStatusUpdates();
     }
@@ -88,6 +96,15 @@ public class GoogleApiMessenger implements GoogleApiClient.ConnectionCallbacks,
         return false;
     }
 
+    /**
+     * Disconnects the client and stops the sender threads
+     * of the @transportMessenger. The messenger can't be used afterwards.
+     */
+    public void shutdown() {
+        disconnect();
+        transportMessenger.shutdown();
+    }
+
     @Override
     public void onConnected(Bundle bundle) {
         Log.d(TAG, "Connected");
@@ -206,76 +223,94 @@ public class GoogleApiMessenger implements GoogleApiClient.ConnectionCallbacks,
     }
 
     public void sendMessageToNearbyNodes(final String path, final byte[] data) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                NodeApi.GetConnectedNodesResult getConnectedNodesResult = Wearable.NodeApi.getConnectedNodes(googleApiClient).await();
-                status.setLastConnectedNodes(getConnectedNodesResult.getNodes());
-                status.setLastConnectedNodesUpdateTimestamp(System.currentTimeMillis());
-                for (Node node : status.getLastConnectedNodes()) {
-                    try {
-                        if (!node.isNearby()) {
-                            continue;
-                        }
-                        sendMessageToNodeWithResult(path, data, node.getId());
-                    } catch (Exception ex) {
-                        Log.w(TAG, "Unable to send message to node: " + ex.getMessage());
-                    }
-                }
-            }
-        }).start();
+        transportMessenger.sendMessageToNearbyNodes(path, data);
     }
 
     public void sendMessageToNode(final String path, final String data, final String nodeId) {
         sendMessageToNode(path, data.getBytes(DEFAULT_CHARSET), nodeId);
     }
 
+    /**
+     * Enqueues the message in the queue of the @transportMessenger,
+     * messages to the same node are sent in order
+     */
     public void sendMessageToNode(final String path, final byte[] data, final String nodeId) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                if (nodeId == null || nodeId.equals(DEFAULT_NODE_ID) || nodeId.equals(getLocalNodeId())) {
-                    sendMessageToLocalNode(path, data, nodeId);
-                } else {
-                    try {
-                        sendMessageToNodeWithResult(path, data, nodeId);
-                    } catch (Exception ex) {
-                        Log.w(TAG, "Unable to send message to node: " + nodeId + ": " + ex.getMessage());
-                        ex.printStackTrace();
-                    }
-                }
-            }
-        }).start();
+        transportMessenger.sendMessageToNode(path, data, nodeId);
     }
 
     public MessageApi.SendMessageResult sendMessageToNodeWithResult(final String path, final byte[] data, String nodeId) throws Exception {
+        return sendPayloadToNode(path, transportMessenger.getPayloadCompressor().compress(data), nodeId);
+    }
+
+    /**
+     * Transport implementation using the Wearable APIs
+     */
+    @Override
+    public void sendMessage(String path, byte[] data, String nodeId) throws Exception {
+        sendPayloadToNode(path, data, nodeId);
+    }
+
+    /**
+     * Called by the @transportMessenger, use setReceivedMessageListener()
+     * to receive messages from any @Transport
+     */
+    @Override
+    public void setMessageListener(Transport.MessageListener messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    /**
+     * Sets the listener that gets called for all messages received by
+     * the @transportMessenger, including the ones sent to the local node
+     */
+    public void setReceivedMessageListener(Transport.MessageListener messageListener) {
+        transportMessenger.setMessageListener(messageListener);
+    }
+
+    /**
+     * Will be called from the Message API if a connected Google API node
+     * sent a message to this device
+     */
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        Transport.MessageListener messageListener = this.messageListener;
+        if (messageListener != null) {
+            messageListener.onMessageReceived(messageEvent.getPath(), messageEvent.getData(), messageEvent.getSourceNodeId());
+        }
+    }
+
+    @Override
+    public List<String> getNearbyNodeIds() throws Exception {
+        NodeApi.GetConnectedNodesResult getConnectedNodesResult = Wearable.NodeApi.getConnectedNodes(googleApiClient).await();
+        status.setLastConnectedNodes(getConnectedNodesResult.getNodes());
+        status.setLastConnectedNodesUpdateTimestamp(System.currentTimeMillis());
+        List<String> nodeIds = new ArrayList<>();
+        for (Node node : getNearbyNodes(status.getLastConnectedNodes())) {
+            nodeIds.add(node.getId());
+        }
+        return nodeIds;
+    }
+
+    @Override
+    public boolean isReachable(String nodeId) {
+        return getLastConnectedNodeById(nodeId) != null;
+    }
+
+    /**
+     * Sends a payload that has already been prepared by the @payloadCompressor
+     */
+    private MessageApi.SendMessageResult sendPayloadToNode(final String path, final byte[] payload, String nodeId) throws Exception {
         if (!googleApiClient.isConnected()) {
             throw new Exception("Google API client is not connected");
         }
         if (nodeId == null) {
             throw new Exception("Node Id is not set");
         }
-        return Wearable.MessageApi.sendMessage(googleApiClient, nodeId, path, data).await();
+        return Wearable.MessageApi.sendMessage(googleApiClient, nodeId, path, payload).await();
     }
 
     public void sendMessageToLocalNode(final String path, final byte[] data, String nodeId) {
-        try {
-            if (nodeId == null) {
-                nodeId = DEFAULT_NODE_ID;
-            }
-            Bundle bundle = new Bundle();
-            bundle.putString(MessageHandler.KEY_PATH, path);
-            bundle.putString(MessageHandler.KEY_SOURCE_NODE_ID, nodeId);
-            bundle.putByteArray(MessageHandler.KEY_DATA, data);
-
-            Message message = new Message();
-            message.setData(bundle);
-
-            app.notifyMessageHandlers(message);
-        } catch (Exception ex) {
-            Log.w(TAG, "Unable to send message to local node: " + ex.getMessage());
-            ex.printStackTrace();
-        }
+        transportMessenger.sendMessageToLocalNode(path, data, nodeId);
     }
 
     public GoogleApiClient getGoogleApiClient() {
@@ -286,6 +321,31 @@ public class GoogleApiMessenger implements GoogleApiClient.ConnectionCallbacks,
         this.googleApiClient = googleApiClient;
     }
 
+    public Transport getTransport() {
+        return transportMessenger.getTransport();
+    }
+
+    /**
+     * Sets the transport that messages to other nodes are sent with,
+     * received messages are forwarded to the received message listener
+     */
+    public void setTransport(Transport transport) {
+        transportMessenger.setTransport(transport);
+    }
+
+    public TransportMessenger getTransportMessenger() {
+        return transportMessenger;
+    }
+
+    public MessageSendQueue getMessageSendQueue() {
+        return transportMessenger.getMessageSendQueue();
+    }
+
+    public PayloadCompressor getPayloadCompressor() {
+        return transportMessenger.getPayloadCompressor();
+    }
+
+    @Override
     public String getLocalNodeId() {
         if (status != null && status.getLocalNode() != null) {
             return status.getLocalNode().getId();
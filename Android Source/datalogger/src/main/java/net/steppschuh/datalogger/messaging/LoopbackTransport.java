@@ -0,0 +1,75 @@
+package net.steppschuh.datalogger.messaging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process @Transport, messages are delivered directly to the listener of
+ * connected transports. Delivery happens on the thread that sends the message.
+ * Payloads are copied, so that senders may re-use their buffers like they
+ * could with any other transport.
+ */
+public class LoopbackTransport implements Transport {
+
+    private final String localNodeId;
+    private final Map<String, LoopbackTransport> connectedTransports;
+    private volatile MessageListener messageListener;
+
+    public LoopbackTransport(String localNodeId) {
+        this.localNodeId = localNodeId;
+        connectedTransports = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Connects both transports, so that they can send messages to each other
+     */
+    public static void connect(LoopbackTransport transport, LoopbackTransport otherTransport) {
+        transport.connectedTransports.put(otherTransport.getLocalNodeId(), otherTransport);
+        otherTransport.connectedTransports.put(transport.getLocalNodeId(), transport);
+    }
+
+    public static void disconnect(LoopbackTransport transport, LoopbackTransport otherTransport) {
+        transport.connectedTransports.remove(otherTransport.getLocalNodeId());
+        otherTransport.connectedTransports.remove(transport.getLocalNodeId());
+    }
+
+    @Override
+    public void sendMessage(String path, byte[] data, String nodeId) throws Exception {
+        LoopbackTransport transport = connectedTransports.get(nodeId);
+        if (transport == null) {
+            throw new Exception("Node is not connected: " + nodeId);
+        }
+        transport.onMessageReceived(path, Arrays.copyOf(data, data.length), localNodeId);
+    }
+
+    private void onMessageReceived(String path, byte[] data, String sourceNodeId) {
+        MessageListener messageListener = this.messageListener;
+        if (messageListener != null) {
+            messageListener.onMessageReceived(path, data, sourceNodeId);
+        }
+    }
+
+    @Override
+    public void setMessageListener(MessageListener messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    @Override
+    public String getLocalNodeId() {
+        return localNodeId;
+    }
+
+    @Override
+    public List<String> getNearbyNodeIds() {
+        return new ArrayList<>(connectedTransports.keySet());
+    }
+
+    @Override
+    public boolean isReachable(String nodeId) {
+        return connectedTransports.containsKey(nodeId);
+    }
+
+}
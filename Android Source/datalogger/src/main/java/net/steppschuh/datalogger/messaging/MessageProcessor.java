@@ -0,0 +1,128 @@
+package net.steppschuh.datalogger.messaging;
+
+import android.os.Message;
+import android.util.Log;
+
+import net.steppschuh.datalogger.logging.TimeTracker;
+import net.steppschuh.datalogger.messaging.handler.MessageHandler;
+import net.steppschuh.datalogger.messaging.handler.MessageHandlerRegistry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes received messages on a fixed set of worker threads, so that
+ * decompressing, parsing and handling messages doesn't block the thread
+ * that delivered them (often the main thread).
+ *
+ * Messages are assigned to a worker based on their source node, so that
+ * messages from the same node are handled in the order they have been
+ * received and by the same thread. Handlers that update the UI need to
+ * post that work to the main thread.
+ */
+public class MessageProcessor {
+
+    private static final String TAG = MessageProcessor.class.getSimpleName();
+
+    public static final int WORKER_COUNT_DEFAULT = 2;
+
+    private final MessageHandlerRegistry messageHandlerRegistry;
+    private final ExecutorService[] workers;
+
+    private final AtomicLong processedMessageCount = new AtomicLong();
+    private final AtomicLong rejectedMessageCount = new AtomicLong();
+    private final TimeTracker processingLatencyTracker;
+
+    public MessageProcessor(MessageHandlerRegistry messageHandlerRegistry) {
+        this(messageHandlerRegistry, WORKER_COUNT_DEFAULT);
+    }
+
+    public MessageProcessor(MessageHandlerRegistry messageHandlerRegistry, int workerCount) {
+        this.messageHandlerRegistry = messageHandlerRegistry;
+        workers = new ExecutorService[Math.max(1, workerCount)];
+        for (int workerIndex = 0; workerIndex < workers.length; workerIndex++) {
+            workers[workerIndex] = Executors.newSingleThreadExecutor(getWorkerThreadFactory(workerIndex));
+        }
+        processingLatencyTracker = new TimeTracker("Message Processing Latency");
+    }
+
+    private static ThreadFactory getWorkerThreadFactory(final int workerIndex) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG + " " + workerIndex);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Queues the message for the worker of its source node and returns
+     * immediately. Returns false if the processor has been shut down.
+     */
+    public boolean process(final Message message) {
+        final long receiveTimestamp = System.nanoTime();
+        String sourceNodeId = MessageHandler.getSourceNodeIdFromMessage(message);
+        try {
+            getWorker(sourceNodeId).execute(new Runnable() {
+                @Override
+                public void run() {
+                    // decompress once, before any handler accesses the data
+                    MessageHandler.getDataBufferFromMessage(message);
+                    messageHandlerRegistry.dispatch(message);
+                    processedMessageCount.incrementAndGet();
+                    synchronized (processingLatencyTracker) {
+                        processingLatencyTracker.addDuration(System.nanoTime() - receiveTimestamp);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            rejectedMessageCount.incrementAndGet();
+            Log.w(TAG, "Unable to process message, processor has been shut down: " + MessageHandler.getPathFromMessage(message));
+            return false;
+        }
+    }
+
+    private ExecutorService getWorker(String sourceNodeId) {
+        int hash = sourceNodeId != null ? sourceNodeId.hashCode() : 0;
+        return workers[(hash & Integer.MAX_VALUE) % workers.length];
+    }
+
+    /**
+     * Stops all workers, messages that have already been queued are still processed
+     */
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public long getProcessedMessageCount() {
+        return processedMessageCount.get();
+    }
+
+    public long getRejectedMessageCount() {
+        return rejectedMessageCount.get();
+    }
+
+    /**
+     * Returns the tracker of the durations between receiving
+     * a message and completing its dispatch
+     */
+    public TimeTracker getProcessingLatencyTracker() {
+        return processingLatencyTracker;
+    }
+
+}
@@ -0,0 +1,317 @@
+package net.steppschuh.datalogger.messaging;
+
+import android.util.Log;
+
+import net.steppschuh.datalogger.logging.TimeTracker;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound queue for messages. Each node gets its own queue that is
+ * drained by a dedicated sender thread, so messages to the same node are sent
+ * in the order they have been enqueued and a slow node doesn't delay others.
+ *
+ * If the queue of a node is full, the @overflowPolicy decides what happens:
+ * @OVERFLOW_DROP_OLDEST drops the oldest queued message, @OVERFLOW_COALESCE
+ * replaces a queued message with the same path (or drops the oldest one if
+ * there is none) and @OVERFLOW_BLOCK blocks the caller until there is space.
+ * Dropped messages are only counted, see getDroppedMessageCount().
+ *
+ * The sender threads keep running until shutdown() is called.
+ */
+public class MessageSendQueue {
+
+    private static final String TAG = MessageSendQueue.class.getSimpleName();
+
+    public static final int OVERFLOW_DROP_OLDEST = 0;
+    public static final int OVERFLOW_COALESCE = 1;
+    public static final int OVERFLOW_BLOCK = 2;
+
+    public static final int CAPACITY_DEFAULT = 16;
+
+    public interface MessageSender {
+        void sendMessage(String path, byte[] data, String nodeId) throws Exception;
+    }
+
+    private final MessageSender messageSender;
+    private final Map<String, NodeQueue> nodeQueues;
+
+    private volatile int capacity = CAPACITY_DEFAULT;
+    private volatile int overflowPolicy = OVERFLOW_DROP_OLDEST;
+    private volatile boolean shutDown;
+
+    private final AtomicLong queuedMessageCount = new AtomicLong();
+    private final AtomicLong sentMessageCount = new AtomicLong();
+    private final AtomicLong failedMessageCount = new AtomicLong();
+    private final AtomicLong droppedMessageCount = new AtomicLong();
+    private final AtomicLong coalescedMessageCount = new AtomicLong();
+    private final TimeTracker sendLatencyTracker;
+
+    public MessageSendQueue(MessageSender messageSender) {
+        this.messageSender = messageSender;
+        nodeQueues = new HashMap<>();
+        sendLatencyTracker = new TimeTracker("Message Send Latency");
+    }
+
+    /**
+     * Adds a message to the queue of the specified node. Returns false if the
+     * queue has been shut down or the caller has been interrupted while
+     * waiting for space.
+     */
+    public boolean enqueue(String path, byte[] data, String nodeId) {
+        NodeQueue nodeQueue = getNodeQueue(nodeId);
+        if (nodeQueue == null) {
+            return false;
+        }
+        try {
+            return nodeQueue.offer(new OutboundMessage(path, data, nodeId));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted while waiting to enqueue message: " + path);
+            return false;
+        }
+    }
+
+    private NodeQueue getNodeQueue(String nodeId) {
+        synchronized (nodeQueues) {
+            if (shutDown) {
+                return null;
+            }
+            NodeQueue nodeQueue = nodeQueues.get(nodeId);
+            if (nodeQueue == null) {
+                nodeQueue = new NodeQueue(nodeId);
+                nodeQueues.put(nodeId, nodeQueue);
+            }
+            return nodeQueue;
+        }
+    }
+
+    /**
+     * Stops the sender threads of all nodes. Messages that are still
+     * queued are discarded and further messages are rejected.
+     */
+    public void shutdown() {
+        synchronized (nodeQueues) {
+            shutDown = true;
+            for (NodeQueue nodeQueue : nodeQueues.values()) {
+                nodeQueue.stop();
+            }
+            nodeQueues.clear();
+        }
+    }
+
+    public boolean isShutDown() {
+        return shutDown;
+    }
+
+    /**
+     * Returns the amount of messages that are waiting to be sent to the specified node
+     */
+    public int getQueueDepth(String nodeId) {
+        NodeQueue nodeQueue;
+        synchronized (nodeQueues) {
+            nodeQueue = nodeQueues.get(nodeId);
+        }
+        return nodeQueue != null ? nodeQueue.size() : 0;
+    }
+
+    /**
+     * Returns the duration in nanoseconds between enqueuing and completing the
+     * delivery of the message that has been sent to the specified node last
+     */
+    public long getLastSendLatency(String nodeId) {
+        NodeQueue nodeQueue;
+        synchronized (nodeQueues) {
+            nodeQueue = nodeQueues.get(nodeId);
+        }
+        return nodeQueue != null ? nodeQueue.lastSendLatency : 0;
+    }
+
+    /**
+     * Returns the amount of messages that are waiting to be sent to any node
+     */
+    public long getQueueDepth() {
+        return queuedMessageCount.get();
+    }
+
+    private static class OutboundMessage {
+
+        private final String path;
+        private final byte[] data;
+        private final String nodeId;
+        private final long enqueueTimestamp;
+
+        private OutboundMessage(String path, byte[] data, String nodeId) {
+            this.path = path;
+            this.data = data;
+            this.nodeId = nodeId;
+            enqueueTimestamp = System.nanoTime();
+        }
+
+    }
+
+    private class NodeQueue implements Runnable {
+
+        private final ArrayDeque<OutboundMessage> messages;
+        private final Thread senderThread;
+        private volatile long lastSendLatency;
+
+        private NodeQueue(String nodeId) {
+            messages = new ArrayDeque<>();
+            senderThread = new Thread(this, TAG + " " + nodeId);
+            senderThread.setDaemon(true);
+            senderThread.start();
+        }
+
+        /**
+         * Returns false if the queue has been stopped
+         */
+        private synchronized boolean offer(OutboundMessage message) throws InterruptedException {
+            while (messages.size() >= capacity) {
+                if (shutDown) {
+                    return false;
+                }
+                if (overflowPolicy == OVERFLOW_BLOCK) {
+                    wait();
+                    continue;
+                }
+                if (overflowPolicy == OVERFLOW_COALESCE && replace(message)) {
+                    coalescedMessageCount.incrementAndGet();
+                    return true;
+                }
+                messages.pollFirst();
+                queuedMessageCount.decrementAndGet();
+                droppedMessageCount.incrementAndGet();
+            }
+            if (shutDown) {
+                return false;
+            }
+            messages.addLast(message);
+            queuedMessageCount.incrementAndGet();
+            notifyAll();
+            return true;
+        }
+
+        /**
+         * Discards all queued messages, wakes up blocked callers
+         * and interrupts the sender thread
+         */
+        private synchronized void stop() {
+            queuedMessageCount.addAndGet(-messages.size());
+            messages.clear();
+            notifyAll();
+            senderThread.interrupt();
+        }
+
+        /**
+         * Replaces the newest queued message with the same path
+         */
+        private boolean replace(OutboundMessage message) {
+            ArrayDeque<OutboundMessage> replacedMessages = new ArrayDeque<>(messages.size());
+            boolean replaced = false;
+            Iterator<OutboundMessage> iterator = messages.descendingIterator();
+            while (iterator.hasNext()) {
+                OutboundMessage queuedMessage = iterator.next();
+                if (!replaced && queuedMessage.path.equals(message.path)) {
+                    queuedMessage = message;
+                    replaced = true;
+                }
+                replacedMessages.addFirst(queuedMessage);
+            }
+            if (replaced) {
+                messages.clear();
+                messages.addAll(replacedMessages);
+            }
+            return replaced;
+        }
+
+        private synchronized OutboundMessage take() throws InterruptedException {
+            while (messages.isEmpty()) {
+                wait();
+            }
+            OutboundMessage message = messages.pollFirst();
+            queuedMessageCount.decrementAndGet();
+            notifyAll();
+            return message;
+        }
+
+        private synchronized int size() {
+            return messages.size();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                OutboundMessage message;
+                try {
+                    message = take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                try {
+                    messageSender.sendMessage(message.path, message.data, message.nodeId);
+                    sentMessageCount.incrementAndGet();
+                } catch (Exception ex) {
+                    if (shutDown) {
+                        return;
+                    }
+                    failedMessageCount.incrementAndGet();
+                    Log.w(TAG, "Unable to send message to node: " + message.nodeId + ": " + ex.getMessage());
+                }
+                lastSendLatency = System.nanoTime() - message.enqueueTimestamp;
+                synchronized (sendLatencyTracker) {
+                    sendLatencyTracker.addDuration(lastSendLatency);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public int getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(int overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public long getSentMessageCount() {
+        return sentMessageCount.get();
+    }
+
+    public long getFailedMessageCount() {
+        return failedMessageCount.get();
+    }
+
+    public long getDroppedMessageCount() {
+        return droppedMessageCount.get();
+    }
+
+    public long getCoalescedMessageCount() {
+        return coalescedMessageCount.get();
+    }
+
+    /**
+     * Returns the tracker of the durations between enqueuing
+     * a message and completing its delivery
+     */
+    public TimeTracker getSendLatencyTracker() {
+        return sendLatencyTracker;
+    }
+
+}
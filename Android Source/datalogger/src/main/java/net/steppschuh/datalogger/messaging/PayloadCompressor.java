@@ -0,0 +1,231 @@
+package net.steppschuh.datalogger.messaging;
+
+import net.steppschuh.datalogger.logging.TimeTracker;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses message payloads using Deflate. Compressed payloads are prefixed
+ * with @HEADER_DEFLATE. Payloads smaller than the @compressionThreshold are sent
+ * uncompressed, because Deflate doesn't pay off for them. Uncompressed payloads
+ * are sent as they are, unless they start with a header byte themselves, which
+ * JSON and binary messages never do. Only those get prefixed with
+ * @HEADER_UNCOMPRESSED, which requires a copy.
+ *
+ * Each thread uses its own @Deflater and @Inflater, so that messages can be
+ * compressed and decompressed by multiple threads without waiting for each other.
+ */
+public class PayloadCompressor {
+
+    public static final byte HEADER_UNCOMPRESSED = 0;
+    public static final byte HEADER_DEFLATE = 1;
+    public static final int HEADER_SIZE = 1;
+
+    public static final int LEVEL_FAST = Deflater.BEST_SPEED;
+    public static final int LEVEL_STRONG = Deflater.BEST_COMPRESSION;
+
+    public static final int COMPRESSION_THRESHOLD_DEFAULT = 1024;
+    public static final int COMPRESSION_THRESHOLD_DISABLED = Integer.MAX_VALUE;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final ThreadLocal<Codec> codecs = new ThreadLocal<Codec>() {
+        @Override
+        protected Codec initialValue() {
+            return new Codec();
+        }
+    };
+
+    private volatile int compressionThreshold = COMPRESSION_THRESHOLD_DEFAULT;
+    private volatile int compressionLevel = LEVEL_FAST;
+
+    private final TimeTracker compressionTimeTracker;
+    private final TimeTracker decompressionTimeTracker;
+    private final AtomicLong uncompressedByteCount = new AtomicLong();
+    private final AtomicLong compressedByteCount = new AtomicLong();
+    private volatile float lastCompressionRatio = 1;
+
+    public PayloadCompressor() {
+        compressionTimeTracker = new TimeTracker("Payload Compression");
+        decompressionTimeTracker = new TimeTracker("Payload Decompression");
+    }
+
+    public PayloadCompressor(int compressionThreshold, int compressionLevel) {
+        this();
+        setCompressionThreshold(compressionThreshold);
+        setCompressionLevel(compressionLevel);
+    }
+
+    /**
+     * Returns the payload, compressed if the data exceeds the @compressionThreshold
+     * and compression actually reduces its size. Otherwise the data itself is
+     * returned, unless it needs to be prefixed with @HEADER_UNCOMPRESSED.
+     */
+    public byte[] compress(byte[] data) {
+        if (data == null) {
+            data = new byte[0];
+        }
+        if (data.length < compressionThreshold) {
+            return toUncompressedPayload(data);
+        }
+
+        long startTimestamp = System.nanoTime();
+        Codec codec = codecs.get();
+        Deflater deflater = codec.deflater;
+        deflater.reset();
+        deflater.setLevel(compressionLevel);
+        deflater.setInput(data);
+        deflater.finish();
+        codec.outputStream.reset();
+        codec.outputStream.write(HEADER_DEFLATE);
+        while (!deflater.finished()) {
+            int length = deflater.deflate(codec.chunk);
+            codec.outputStream.write(codec.chunk, 0, length);
+        }
+        int compressedLength = Math.min(codec.outputStream.size() - HEADER_SIZE, data.length);
+        trackDuration(compressionTimeTracker, System.nanoTime() - startTimestamp);
+
+        uncompressedByteCount.addAndGet(data.length);
+        compressedByteCount.addAndGet(compressedLength);
+        lastCompressionRatio = getCompressionRatio(data.length, compressedLength);
+
+        if (compressedLength >= data.length) {
+            return toUncompressedPayload(data);
+        }
+        return codec.outputStream.toByteArray();
+    }
+
+    /**
+     * Removes the header of the specified payload and decompresses it if
+     * needed. Uncompressed data isn't copied, the returned buffer is a view
+     * of the payload that starts after the header, if there is one.
+     */
+    public ByteBuffer decompress(byte[] payload) throws DataFormatException {
+        if (payload == null) {
+            throw new DataFormatException("Payload missing");
+        }
+        if (!hasHeader(payload)) {
+            return ByteBuffer.wrap(payload);
+        } else if (payload[0] == HEADER_UNCOMPRESSED) {
+            return ByteBuffer.wrap(payload, HEADER_SIZE, payload.length - HEADER_SIZE).slice();
+        }
+
+        long startTimestamp = System.nanoTime();
+        Codec codec = codecs.get();
+        Inflater inflater = codec.inflater;
+        inflater.reset();
+        inflater.setInput(payload, HEADER_SIZE, payload.length - HEADER_SIZE);
+        codec.outputStream.reset();
+        while (!inflater.finished()) {
+            int length = inflater.inflate(codec.chunk);
+            if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new DataFormatException("Payload is truncated");
+            }
+            codec.outputStream.write(codec.chunk, 0, length);
+        }
+        byte[] data = codec.outputStream.toByteArray();
+        trackDuration(decompressionTimeTracker, System.nanoTime() - startTimestamp);
+        return ByteBuffer.wrap(data);
+    }
+
+    private static boolean hasHeader(byte[] payload) {
+        return payload.length > 0 && (payload[0] == HEADER_UNCOMPRESSED || payload[0] == HEADER_DEFLATE);
+    }
+
+    private static byte[] toUncompressedPayload(byte[] data) {
+        if (!hasHeader(data)) {
+            return data;
+        }
+        byte[] payload = new byte[HEADER_SIZE + data.length];
+        payload[0] = HEADER_UNCOMPRESSED;
+        System.arraycopy(data, 0, payload, HEADER_SIZE, data.length);
+        return payload;
+    }
+
+    /**
+     * Trackers aren't thread-safe, the last duration is the
+     * time it took to process the most recent payload
+     */
+    private static void trackDuration(TimeTracker timeTracker, long duration) {
+        synchronized (timeTracker) {
+            timeTracker.setDuration(duration);
+            timeTracker.addDuration(duration);
+        }
+    }
+
+    public static float getCompressionRatio(long uncompressedByteCount, long compressedByteCount) {
+        if (compressedByteCount == 0) {
+            return 1;
+        }
+        return uncompressedByteCount / (float) compressedByteCount;
+    }
+
+    /**
+     * Returns the ratio between uncompressed and compressed size of
+     * all payloads that exceeded the @compressionThreshold
+     */
+    public float getCompressionRatio() {
+        return getCompressionRatio(uncompressedByteCount.get(), compressedByteCount.get());
+    }
+
+    /**
+     * Deflater, inflater and buffers used by a single thread
+     */
+    private static class Codec {
+
+        private final Deflater deflater = new Deflater(LEVEL_FAST);
+        private final Inflater inflater = new Inflater();
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(CHUNK_SIZE);
+
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public TimeTracker getCompressionTimeTracker() {
+        return compressionTimeTracker;
+    }
+
+    public TimeTracker getDecompressionTimeTracker() {
+        return decompressionTimeTracker;
+    }
+
+    public long getUncompressedByteCount() {
+        return uncompressedByteCount.get();
+    }
+
+    public long getCompressedByteCount() {
+        return compressedByteCount.get();
+    }
+
+    /**
+     * Returns the ratio between uncompressed and compressed size of the
+     * most recent payload that exceeded the @compressionThreshold
+     */
+    public float getLastCompressionRatio() {
+        return lastCompressionRatio;
+    }
+
+}
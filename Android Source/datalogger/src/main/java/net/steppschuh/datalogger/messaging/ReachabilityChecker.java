@@ -15,9 +15,9 @@ import net.steppschuh.datalogger.messaging.handler.PingMessageHandler;
 import net.steppschuh.datalogger.messaging.handler.SinglePathMessageHandler;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class ReachabilityChecker {
@@ -32,10 +32,10 @@ public class ReachabilityChecker {
 
     MobileApp app;
 
-    private Map<String, Boolean> nodeReachabilities = new HashMap<>();
-    private Map<String, Long> nodeEchoTimestamps = new HashMap<>();
+    private Map<String, Boolean> nodeReachabilities = new ConcurrentHashMap<>();
+    private Map<String, Long> nodeEchoTimestamps = new ConcurrentHashMap<>();
 
-    private Map<String, List<NodeReachabilityUpdateReceiver>> reachabilityUpdateReceivers = new HashMap<>();
+    private Map<String, List<NodeReachabilityUpdateReceiver>> reachabilityUpdateReceivers = new ConcurrentHashMap<>();
     private long updateInterval = UPDATE_INTERVAL_DEFAULT;
     private ReachabilityPingMessageHandler pingMessageHandler;
     private ReachabilityEchoMessageHandler echoMessageHandler;
@@ -103,20 +103,26 @@ public class ReachabilityChecker {
 
     /**
      * Calls all available @reachabilityUpdateReceivers and lets them know
-     * the reachability of the specified node
+     * the reachability of the specified node. Receivers are called on the
+     * main thread, as reachability updates are usually shown in the UI.
      */
-    public void notifyReachabilityUpdateReceivers(String nodeId, boolean isReachable) {
-        List<NodeReachabilityUpdateReceiver> updateReceivers = reachabilityUpdateReceivers.get(NODE_ID_ANY);
+    public void notifyReachabilityUpdateReceivers(final String nodeId, final boolean isReachable) {
+        final List<NodeReachabilityUpdateReceiver> updateReceivers = new ArrayList<>(reachabilityUpdateReceivers.get(NODE_ID_ANY));
         List<NodeReachabilityUpdateReceiver> specificUpdateReceivers = reachabilityUpdateReceivers.get(nodeId);
         if (specificUpdateReceivers != null) {
             updateReceivers.addAll(specificUpdateReceivers);
         }
 
-        for (NodeReachabilityUpdateReceiver reachabilityUpdateReceiver : updateReceivers) {
-            if (reachabilityUpdateReceiver != null) {
-                reachabilityUpdateReceiver.onReachabilityUpdated(nodeId, isReachable);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                for (NodeReachabilityUpdateReceiver reachabilityUpdateReceiver : updateReceivers) {
+                    if (reachabilityUpdateReceiver != null) {
+                        reachabilityUpdateReceiver.onReachabilityUpdated(nodeId, isReachable);
+                    }
+                }
             }
-        }
+        });
     }
 
     /**
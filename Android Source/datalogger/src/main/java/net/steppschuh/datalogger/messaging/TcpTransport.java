@@ -0,0 +1,267 @@
+package net.steppschuh.datalogger.messaging;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @Transport that sends messages over TCP connections on the loopback interface.
+ * Node ids are "host:port" of the server socket that a node listens on.
+ *
+ * Each message is framed as source node id (UTF), path (UTF), payload length
+ * (int) and payload. One outbound connection per node is kept open, incoming
+ * connections are read by a thread each. Nodes that can't be sent to are
+ * removed from the known nodes until they send a message again.
+ */
+public class TcpTransport implements Transport {
+
+    private static final String TAG = TcpTransport.class.getSimpleName();
+
+    public static final String HOST_DEFAULT = "127.0.0.1";
+    public static final int PORT_ANY = 0;
+    public static final int PAYLOAD_LENGTH_MAXIMUM = 16 * 1024 * 1024;
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    private final int port;
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+
+    private final ConcurrentMap<String, Connection> connections;
+    private final Set<Socket> acceptedSockets;
+    private final Set<String> knownNodeIds;
+    private volatile MessageListener messageListener;
+
+    public TcpTransport() {
+        this(PORT_ANY);
+    }
+
+    public TcpTransport(int port) {
+        this.port = port;
+        connections = new ConcurrentHashMap<>();
+        acceptedSockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+        knownNodeIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    public static String getNodeId(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * Starts listening for incoming connections
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 0, InetAddress.getByName(HOST_DEFAULT));
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        startReading(serverSocket.accept());
+                    } catch (IOException ex) {
+                        if (!serverSocket.isClosed()) {
+                            Log.w(TAG, "Unable to accept connection: " + ex.getMessage());
+                        }
+                    }
+                }
+            }
+        }, TAG + " " + getLocalNodeId());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Stops listening and closes all connections, which
+     * also stops the threads reading from them
+     */
+    public void stop() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ex) {
+            Log.w(TAG, "Unable to close server socket: " + ex.getMessage());
+        }
+        for (Connection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+        for (Socket socket : acceptedSockets) {
+            closeSocket(socket);
+        }
+        acceptedSockets.clear();
+    }
+
+    /**
+     * Makes the specified node available for discovery, nodes that
+     * sent a message to this transport are added automatically
+     */
+    public void addNode(String nodeId) {
+        knownNodeIds.add(nodeId);
+    }
+
+    @Override
+    public void sendMessage(String path, byte[] data, String nodeId) throws Exception {
+        Connection connection;
+        try {
+            connection = getConnection(nodeId);
+        } catch (IOException ex) {
+            knownNodeIds.remove(nodeId);
+            throw ex;
+        }
+        try {
+            connection.write(getLocalNodeId(), path, data);
+        } catch (IOException ex) {
+            connections.remove(nodeId, connection);
+            knownNodeIds.remove(nodeId);
+            connection.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the connection to the specified node, or connects to it.
+     * If another thread connected at the same time, its connection is used.
+     */
+    private Connection getConnection(String nodeId) throws IOException {
+        Connection connection = connections.get(nodeId);
+        if (connection != null) {
+            return connection;
+        }
+        int separatorIndex = nodeId.lastIndexOf(':');
+        if (separatorIndex < 0) {
+            throw new IOException("Invalid node id: " + nodeId);
+        }
+        String host = nodeId.substring(0, separatorIndex);
+        int port = Integer.parseInt(nodeId.substring(separatorIndex + 1));
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            connection = new Connection(socket);
+        } catch (IOException ex) {
+            closeSocket(socket);
+            throw ex;
+        }
+        Connection existingConnection = connections.putIfAbsent(nodeId, connection);
+        if (existingConnection != null) {
+            connection.close();
+            return existingConnection;
+        }
+        knownNodeIds.add(nodeId);
+        return connection;
+    }
+
+    private void startReading(final Socket socket) {
+        acceptedSockets.add(socket);
+        if (serverSocket.isClosed()) {
+            // stop() has been called while accepting
+            acceptedSockets.remove(socket);
+            closeSocket(socket);
+            return;
+        }
+        Thread readThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    DataInputStream inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    while (true) {
+                        String sourceNodeId = inputStream.readUTF();
+                        String path = inputStream.readUTF();
+                        int length = inputStream.readInt();
+                        if (length < 0 || length > PAYLOAD_LENGTH_MAXIMUM) {
+                            throw new IOException("Invalid payload length: " + length);
+                        }
+                        byte[] data = new byte[length];
+                        inputStream.readFully(data);
+                        knownNodeIds.add(sourceNodeId);
+
+                        MessageListener messageListener = TcpTransport.this.messageListener;
+                        if (messageListener != null) {
+                            messageListener.onMessageReceived(path, data, sourceNodeId);
+                        }
+                    }
+                } catch (EOFException ex) {
+                    // connection has been closed by the sender
+                } catch (IOException ex) {
+                    if (!socket.isClosed()) {
+                        Log.w(TAG, "Unable to read message: " + ex.getMessage());
+                    }
+                } finally {
+                    acceptedSockets.remove(socket);
+                    closeSocket(socket);
+                }
+            }
+        }, TAG + " " + socket.getRemoteSocketAddress());
+        readThread.setDaemon(true);
+        readThread.start();
+    }
+
+    private static void closeSocket(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            Log.w(TAG, "Unable to close socket: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void setMessageListener(MessageListener messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    @Override
+    public String getLocalNodeId() {
+        return getNodeId(HOST_DEFAULT, serverSocket != null ? serverSocket.getLocalPort() : port);
+    }
+
+    @Override
+    public List<String> getNearbyNodeIds() {
+        return new ArrayList<>(knownNodeIds);
+    }
+
+    @Override
+    public boolean isReachable(String nodeId) {
+        return connections.containsKey(nodeId) || knownNodeIds.contains(nodeId);
+    }
+
+    private static class Connection {
+
+        private final Socket socket;
+        private final DataOutputStream outputStream;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private synchronized void write(String sourceNodeId, String path, byte[] data) throws IOException {
+            outputStream.writeUTF(sourceNodeId);
+            outputStream.writeUTF(path);
+            outputStream.writeInt(data.length);
+            outputStream.write(data);
+            outputStream.flush();
+        }
+
+        private void close() {
+            closeSocket(socket);
+        }
+
+    }
+
+}
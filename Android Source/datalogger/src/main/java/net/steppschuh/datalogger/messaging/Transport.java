@@ -0,0 +1,42 @@
+package net.steppschuh.datalogger.messaging;
+
+import java.util.List;
+
+/**
+ * Moves message payloads between nodes. The @GoogleApiMessenger uses the
+ * Wearable APIs by default, the @LoopbackTransport and @TcpTransport allow
+ * running the messaging pipeline without devices or Play Services.
+ *
+ * Payloads are sent as they are, queueing and compression happen before
+ * in the @TransportMessenger.
+ */
+public interface Transport {
+
+    interface MessageListener {
+        void onMessageReceived(String path, byte[] data, String sourceNodeId);
+    }
+
+    /**
+     * Sends the payload to the specified node, blocks until it has been sent
+     */
+    void sendMessage(String path, byte[] data, String nodeId) throws Exception;
+
+    /**
+     * Sets the listener that gets called for all messages received from other nodes
+     */
+    void setMessageListener(MessageListener messageListener);
+
+    String getLocalNodeId();
+
+    /**
+     * Returns the ids of nodes that messages can be sent to directly,
+     * may block while discovering nodes
+     */
+    List<String> getNearbyNodeIds() throws Exception;
+
+    /**
+     * Returns true if the specified node has been reachable recently
+     */
+    boolean isReachable(String nodeId);
+
+}
@@ -0,0 +1,139 @@
+package net.steppschuh.datalogger.messaging;
+
+import android.util.Log;
+
+/**
+ * Sends and receives messages using a @Transport. Outgoing messages are queued
+ * per node in the @MessageSendQueue and compressed by the @PayloadCompressor on
+ * its sender threads. Received payloads, including the ones sent to the local
+ * node, are forwarded to the @Transport.MessageListener as they are.
+ *
+ * Doesn't depend on Play Services, the @GoogleApiMessenger only provides the
+ * default @Transport. With a @LoopbackTransport or @TcpTransport, the messaging
+ * pipeline runs on a plain JVM.
+ */
+public class TransportMessenger {
+
+    private static final String TAG = TransportMessenger.class.getSimpleName();
+
+    public static final String DEFAULT_NODE_ID = "LOCAL_NODE";
+    public static final String NEARBY_NODES_ID = "NEARBY_NODES";
+
+    private final PayloadCompressor payloadCompressor;
+    private final MessageSendQueue messageSendQueue;
+    private volatile Transport transport;
+    private volatile Transport.MessageListener messageListener;
+
+    public TransportMessenger(Transport transport) {
+        payloadCompressor = new PayloadCompressor();
+        messageSendQueue = new MessageSendQueue(getMessageSender());
+        setTransport(transport);
+    }
+
+    public void sendMessageToNearbyNodes(String path, byte[] data) {
+        messageSendQueue.enqueue(path, data, NEARBY_NODES_ID);
+    }
+
+    /**
+     * Enqueues the message in the @messageSendQueue, messages to
+     * the same node are sent in order
+     */
+    public void sendMessageToNode(String path, byte[] data, String nodeId) {
+        messageSendQueue.enqueue(path, data, nodeId != null ? nodeId : DEFAULT_NODE_ID);
+    }
+
+    /**
+     * Forwards the message to the listener on the calling thread,
+     * without queueing it
+     */
+    public void sendMessageToLocalNode(String path, byte[] data, String nodeId) {
+        sendPayloadToLocalNode(path, payloadCompressor.compress(data), nodeId);
+    }
+
+    /**
+     * Called from the sender threads of the @messageSendQueue
+     */
+    private MessageSendQueue.MessageSender getMessageSender() {
+        return new MessageSendQueue.MessageSender() {
+            @Override
+            public void sendMessage(String path, byte[] data, String nodeId) throws Exception {
+                byte[] payload = payloadCompressor.compress(data);
+                Transport transport = TransportMessenger.this.transport;
+                if (nodeId.equals(NEARBY_NODES_ID)) {
+                    sendPayloadToNearbyNodes(transport, path, payload);
+                } else if (nodeId.equals(DEFAULT_NODE_ID) || nodeId.equals(transport.getLocalNodeId())) {
+                    sendPayloadToLocalNode(path, payload, nodeId);
+                } else {
+                    transport.sendMessage(path, payload, nodeId);
+                }
+            }
+        };
+    }
+
+    private void sendPayloadToNearbyNodes(Transport transport, String path, byte[] payload) throws Exception {
+        for (String nodeId : transport.getNearbyNodeIds()) {
+            try {
+                transport.sendMessage(path, payload, nodeId);
+            } catch (Exception ex) {
+                Log.w(TAG, "Unable to send message to node: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void sendPayloadToLocalNode(String path, byte[] payload, String nodeId) {
+        onMessageReceived(path, payload, nodeId != null ? nodeId : DEFAULT_NODE_ID);
+    }
+
+    private void onMessageReceived(String path, byte[] payload, String sourceNodeId) {
+        Transport.MessageListener messageListener = this.messageListener;
+        if (messageListener != null) {
+            messageListener.onMessageReceived(path, payload, sourceNodeId);
+        }
+    }
+
+    /**
+     * Stops the sender threads of the @messageSendQueue,
+     * the messenger can't send messages afterwards
+     */
+    public void shutdown() {
+        messageSendQueue.shutdown();
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport that messages to other nodes are sent with,
+     * received messages are forwarded to the listener of this messenger
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+        transport.setMessageListener(new Transport.MessageListener() {
+            @Override
+            public void onMessageReceived(String path, byte[] payload, String sourceNodeId) {
+                TransportMessenger.this.onMessageReceived(path, payload, sourceNodeId);
+            }
+        });
+    }
+
+    /**
+     * Sets the listener that gets called for all received messages,
+     * with payloads that haven't been decompressed yet
+     */
+    public void setMessageListener(Transport.MessageListener messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    public MessageSendQueue getMessageSendQueue() {
+        return messageSendQueue;
+    }
+
+    public PayloadCompressor getPayloadCompressor() {
+        return payloadCompressor;
+    }
+
+}
@@ -3,11 +3,15 @@ package net.steppschuh.datalogger.messaging.handler;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.util.Log;
 
 import net.steppschuh.datalogger.messaging.GoogleApiMessenger;
 import net.steppschuh.datalogger.messaging.MessageReceiver;
+import net.steppschuh.datalogger.messaging.PayloadCompressor;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class MessageHandler extends Handler {
@@ -17,6 +21,8 @@ public class MessageHandler extends Handler {
     public static final String KEY_PATH = "path";
     public static final String KEY_DATA = "data";
     public static final String KEY_SOURCE_NODE_ID = "source_node_id";
+    public static final String KEY_DATA_DECOMPRESSED = "data_decompressed";
+    public static final String KEY_DATA_OFFSET = "data_offset";
 
     public static final String PATH_ANY = "/*";
     public static final String PATH_PING = "/ping";
@@ -28,6 +34,9 @@ public class MessageHandler extends Handler {
     public static final String PATH_SET_SENSORS = "/set_sensors";
     public static final String PATH_SENSOR_DATA_REQUEST = "/sensor_data_request";
     public static final String PATH_SENSOR_DATA_REQUEST_RESPONSE = "/sensor_data_request_response";
+    public static final String PATH_SENSOR_DATA_SCHEMA = "/sensor_data_schema";
+
+    private static final PayloadCompressor payloadCompressor = new PayloadCompressor();
 
     private MessageReceiver messageReceiver;
     private List<String> paths;
@@ -88,7 +97,14 @@ public class MessageHandler extends Handler {
         return data.getString(MessageHandler.KEY_SOURCE_NODE_ID);
     }
 
-    public static byte[] getDataFromMessage(Message message) {
+    /**
+     * Returns the data of the specified message. Payloads are decompressed
+     * when accessed for the first time, the result is stored in the message
+     * so that other handlers of the same message don't need to do it again.
+     * Uncompressed payloads are only referenced, the returned buffer starts
+     * after their header, if they have one.
+     */
+    public static ByteBuffer getDataBufferFromMessage(Message message) {
         if (message == null) {
             return null;
         }
@@ -96,13 +112,45 @@ public class MessageHandler extends Handler {
         if (data == null) {
             return null;
         }
-        return data.getByteArray(MessageHandler.KEY_DATA);
+        byte[] payload = data.getByteArray(MessageHandler.KEY_DATA);
+        if (payload == null) {
+            return null;
+        }
+        if (data.getBoolean(KEY_DATA_DECOMPRESSED)) {
+            int offset = data.getInt(KEY_DATA_OFFSET);
+            return ByteBuffer.wrap(payload, offset, payload.length - offset).slice();
+        }
+        try {
+            ByteBuffer decompressedData = payloadCompressor.decompress(payload);
+            data.putByteArray(MessageHandler.KEY_DATA, decompressedData.array());
+            data.putInt(KEY_DATA_OFFSET, decompressedData.arrayOffset());
+            data.putBoolean(KEY_DATA_DECOMPRESSED, true);
+            return decompressedData;
+        } catch (Exception ex) {
+            Log.w(TAG, "Unable to decompress message data: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the data of the specified message as array, which needs to be
+     * copied for uncompressed payloads. Use getDataBufferFromMessage() if possible.
+     */
+    public static byte[] getDataFromMessage(Message message) {
+        ByteBuffer data = getDataBufferFromMessage(message);
+        if (data == null) {
+            return null;
+        }
+        if (data.arrayOffset() == 0 && data.remaining() == data.array().length) {
+            return data.array();
+        }
+        return Arrays.copyOfRange(data.array(), data.arrayOffset(), data.arrayOffset() + data.remaining());
     }
 
     public static String getDataFromMessageAsString(Message message) {
-        byte[] data = getDataFromMessage(message);
+        ByteBuffer data = getDataBufferFromMessage(message);
         if (data != null) {
-            return new String(data, GoogleApiMessenger.DEFAULT_CHARSET);
+            return new String(data.array(), data.arrayOffset() + data.position(), data.remaining(), GoogleApiMessenger.DEFAULT_CHARSET);
         }
         return null;
     }
@@ -114,6 +162,10 @@ public class MessageHandler extends Handler {
         }
     }
 
+    public static PayloadCompressor getPayloadCompressor() {
+        return payloadCompressor;
+    }
+
     /**
      * Getter & Setter
      */
@@ -0,0 +1,229 @@
+package net.steppschuh.datalogger.messaging.handler;
+
+import android.os.Message;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of registered @MessageHandler instances and dispatches
+ * messages to the ones that can handle their path.
+ *
+ * Handlers are indexed by path, handlers for @MessageHandler.PATH_ANY are
+ * part of every route. Routes are rebuilt when a handler is (un)registered
+ * and published as an immutable snapshot, so that dispatching a message
+ * requires neither locks nor allocations, unless a handler fails or a path
+ * without a route is dispatched for the first time. Dispatch counts and
+ * durations are kept in atomic counters per route, messages of paths without
+ * a route are counted per path as well. The paths of a handler are read when
+ * it gets registered.
+ */
+public class MessageHandlerRegistry {
+
+    private static final String TAG = MessageHandlerRegistry.class.getSimpleName();
+
+    private final List<MessageHandler> messageHandlers;
+    private final Map<String, DispatchCounter> dispatchCounters;
+    private final ConcurrentMap<String, AtomicLong> unmatchedMessageCounts;
+
+    private volatile Map<String, Route> routes;
+    private volatile Route wildcardRoute;
+
+    private final AtomicLong dispatchedMessageCount = new AtomicLong();
+
+    public MessageHandlerRegistry() {
+        messageHandlers = new ArrayList<>();
+        dispatchCounters = new HashMap<>();
+        unmatchedMessageCounts = new ConcurrentHashMap<>();
+        routes = Collections.emptyMap();
+        wildcardRoute = new Route(new MessageHandler[0], getOrCreateDispatchCounter(MessageHandler.PATH_ANY));
+    }
+
+    public synchronized boolean register(MessageHandler messageHandler) {
+        if (messageHandlers.contains(messageHandler)) {
+            return false;
+        }
+        messageHandlers.add(messageHandler);
+        updateRoutes();
+        return true;
+    }
+
+    public synchronized boolean unregister(MessageHandler messageHandler) {
+        if (!messageHandlers.remove(messageHandler)) {
+            return false;
+        }
+        updateRoutes();
+        return true;
+    }
+
+    /**
+     * Creates a route for each registered path, containing all matching
+     * handlers in the order they have been registered
+     */
+    private void updateRoutes() {
+        LinkedHashSet<String> paths = new LinkedHashSet<>();
+        for (MessageHandler messageHandler : messageHandlers) {
+            paths.addAll(messageHandler.getPaths());
+        }
+        paths.remove(MessageHandler.PATH_ANY);
+
+        Map<String, Route> updatedRoutes = new HashMap<>();
+        for (String path : paths) {
+            updatedRoutes.put(path, createRoute(path));
+        }
+        routes = updatedRoutes;
+        wildcardRoute = createRoute(MessageHandler.PATH_ANY);
+    }
+
+    private Route createRoute(String path) {
+        List<MessageHandler> matchingHandlers = new ArrayList<>();
+        for (MessageHandler messageHandler : messageHandlers) {
+            List<String> handlerPaths = messageHandler.getPaths();
+            if (handlerPaths.contains(path) || handlerPaths.contains(MessageHandler.PATH_ANY)) {
+                matchingHandlers.add(messageHandler);
+            }
+        }
+        MessageHandler[] handlers = matchingHandlers.toArray(new MessageHandler[matchingHandlers.size()]);
+        return new Route(handlers, getOrCreateDispatchCounter(path));
+    }
+
+    private DispatchCounter getOrCreateDispatchCounter(String path) {
+        DispatchCounter dispatchCounter = dispatchCounters.get(path);
+        if (dispatchCounter == null) {
+            dispatchCounter = new DispatchCounter();
+            dispatchCounters.put(path, dispatchCounter);
+        }
+        return dispatchCounter;
+    }
+
+    /**
+     * Forwards the message to all handlers of its path and returns
+     * the amount of handlers that handled it
+     */
+    public int dispatch(Message message) {
+        String path = MessageHandler.getPathFromMessage(message);
+        Route route = path != null ? routes.get(path) : null;
+        if (route == null) {
+            getOrCreateUnmatchedMessageCount(path).incrementAndGet();
+            route = wildcardRoute;
+        }
+
+        dispatchedMessageCount.incrementAndGet();
+        MessageHandler[] handlers = route.handlers;
+        if (handlers.length == 0) {
+            return 0;
+        }
+
+        long startTimestamp = System.nanoTime();
+        int handledCount = 0;
+        for (MessageHandler messageHandler : handlers) {
+            try {
+                messageHandler.handleMessage(message);
+                handledCount += 1;
+            } catch (Exception ex) {
+                Log.w(TAG, "Message handler is unable to handle message: " + ex.getMessage());
+                ex.printStackTrace();
+            }
+        }
+        route.dispatchCounter.count.incrementAndGet();
+        route.dispatchCounter.duration.addAndGet(System.nanoTime() - startTimestamp);
+        return handledCount;
+    }
+
+    /**
+     * Messages without a path are counted for @MessageHandler.PATH_ANY
+     */
+    private AtomicLong getOrCreateUnmatchedMessageCount(String path) {
+        String key = path != null ? path : MessageHandler.PATH_ANY;
+        AtomicLong unmatchedMessageCount = unmatchedMessageCounts.get(key);
+        if (unmatchedMessageCount == null) {
+            AtomicLong createdMessageCount = new AtomicLong();
+            unmatchedMessageCount = unmatchedMessageCounts.putIfAbsent(key, createdMessageCount);
+            if (unmatchedMessageCount == null) {
+                unmatchedMessageCount = createdMessageCount;
+            }
+        }
+        return unmatchedMessageCount;
+    }
+
+    /**
+     * Returns a copy of the registered handlers
+     */
+    public synchronized List<MessageHandler> getMessageHandlers() {
+        return new ArrayList<>(messageHandlers);
+    }
+
+    /**
+     * Returns the amount of messages of the specified path that have been
+     * dispatched to at least one handler. Messages of unregistered paths
+     * are counted for @MessageHandler.PATH_ANY.
+     */
+    public synchronized long getDispatchCount(String path) {
+        DispatchCounter dispatchCounter = dispatchCounters.get(path);
+        return dispatchCounter != null ? dispatchCounter.count.get() : 0;
+    }
+
+    /**
+     * Returns the time in nanoseconds that it took to dispatch all
+     * messages counted by getDispatchCount()
+     */
+    public synchronized long getDispatchDuration(String path) {
+        DispatchCounter dispatchCounter = dispatchCounters.get(path);
+        return dispatchCounter != null ? dispatchCounter.duration.get() : 0;
+    }
+
+    private static class DispatchCounter {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong duration = new AtomicLong();
+
+    }
+
+    private static class Route {
+
+        private final MessageHandler[] handlers;
+        private final DispatchCounter dispatchCounter;
+
+        private Route(MessageHandler[] handlers, DispatchCounter dispatchCounter) {
+            this.handlers = handlers;
+            this.dispatchCounter = dispatchCounter;
+        }
+
+    }
+
+    /**
+     * Getter & Setter
+     */
+    public long getDispatchedMessageCount() {
+        return dispatchedMessageCount.get();
+    }
+
+    /**
+     * Returns the amount of messages of the specified path that no route
+     * existed for, including the ones handled by @MessageHandler.PATH_ANY handlers
+     */
+    public long getUnmatchedMessageCount(String path) {
+        AtomicLong unmatchedMessageCount = unmatchedMessageCounts.get(path);
+        return unmatchedMessageCount != null ? unmatchedMessageCount.get() : 0;
+    }
+
+    /**
+     * Returns the amount of messages of all paths that no route existed for
+     */
+    public long getUnmatchedMessageCount() {
+        long unmatchedMessageCount = 0;
+        for (AtomicLong messageCount : unmatchedMessageCounts.values()) {
+            unmatchedMessageCount += messageCount.get();
+        }
+        return unmatchedMessageCount;
+    }
+
+}
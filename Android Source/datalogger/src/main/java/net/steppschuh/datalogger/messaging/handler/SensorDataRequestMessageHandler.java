@@ -8,8 +8,8 @@ import net.steppschuh.datalogger.data.request.SensorDataRequest;
 import net.steppschuh.datalogger.data.request.SensorDataRequestResponseGenerator;
 import net.steppschuh.datalogger.messaging.GoogleApiMessenger;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SensorDataRequestMessageHandler extends SinglePathMessageHandler {
 
@@ -19,7 +19,7 @@ public class SensorDataRequestMessageHandler extends SinglePathMessageHandler {
     public SensorDataRequestMessageHandler(MobileApp app) {
         super(PATH_SENSOR_DATA_REQUEST);
         this.app = app;
-        requestResponseGenerators = new HashMap<>();
+        requestResponseGenerators = new ConcurrentHashMap<>();
     }
 
     @Override
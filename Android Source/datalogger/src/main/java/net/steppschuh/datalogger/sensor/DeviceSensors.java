@@ -3,8 +3,8 @@ package net.steppschuh.datalogger.sensor;
 import android.hardware.Sensor;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+
+import net.steppschuh.datalogger.data.JsonSerialization;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -60,10 +60,7 @@ public class DeviceSensors implements Serializable {
     public String toJson() {
         String jsonData = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            jsonData = mapper.writeValueAsString(this);
+            jsonData = JsonSerialization.toJson(this);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -72,9 +69,7 @@ public class DeviceSensors implements Serializable {
 
     public static DeviceSensors fromJson(String json) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            DeviceSensors deviceSensors = mapper.readValue(json, DeviceSensors.class);
+            DeviceSensors deviceSensors = JsonSerialization.fromJson(json, DeviceSensors.class);
             return deviceSensors;
         } catch (Exception ex) {
             ex.printStackTrace();
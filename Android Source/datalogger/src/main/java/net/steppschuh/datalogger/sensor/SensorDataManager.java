@@ -5,30 +5,58 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 
-import net.steppschuh.datalogger.data.Data;
 import net.steppschuh.datalogger.data.DataBatch;
+import net.steppschuh.datalogger.data.MemoryBudget;
+import net.steppschuh.datalogger.logging.AllocationTracker;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Registers sensor event listeners and keeps a @DataBatch for each sensor type.
+ * All sensor events are delivered on a dedicated thread, which is the only
+ * thread that adds data to the batches.
+ */
 public class SensorDataManager {
 
     public static final String TAG = SensorDataManager.class.getSimpleName();
 
     private SensorManager sensorManager;
+    private MemoryBudget memoryBudget;
+    private HandlerThread sensorEventThread;
+    private Handler sensorEventHandler;
 
     private Map<Integer, DataBatch> sensorDataBatches;
     private Map<Integer, SensorEventListener> sensorEventListeners;
 
+    private volatile AllocationTracker allocationTracker;
+
     public SensorDataManager(Context context) {
+        this(context, new MemoryBudget());
+    }
+
+    /**
+     * Creates a manager that registers all sensor batches at the specified budget
+     */
+    public SensorDataManager(Context context, MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        initializeSensorEventThread();
         initializeSensorEventListeners();
         initializeSensorDataBatches();
     }
 
+    private void initializeSensorEventThread() {
+        sensorEventThread = new HandlerThread(TAG);
+        sensorEventThread.start();
+        sensorEventHandler = new Handler(sensorEventThread.getLooper());
+    }
+
     private void initializeSensorEventListeners() {
         sensorEventListeners = new HashMap<>();
     }
@@ -55,7 +83,7 @@ public class SensorDataManager {
             return;
         }
         Log.v(TAG, "Registering sensor event listener for " + sensor.getType() + " - " + sensor.getName());
-        sensorManager.registerListener(getSensorEventListener(sensor.getType()), sensor, SensorManager.SENSOR_DELAY_FASTEST);
+        sensorManager.registerListener(getSensorEventListener(sensor.getType()), sensor, SensorManager.SENSOR_DELAY_FASTEST, sensorEventHandler);
     }
 
     public void unregisterAllSensorEventListeners() {
@@ -73,6 +101,23 @@ public class SensorDataManager {
         }
     }
 
+    /**
+     * Unregisters all listeners and batches and quits the sensor event thread,
+     * the manager can't receive sensor events afterwards
+     */
+    public void shutdown() {
+        Log.v(TAG, "Shutting down sensor event thread");
+        unregisterAllSensorEventListeners();
+        for (DataBatch dataBatch : sensorDataBatches.values()) {
+            if (dataBatch != null) {
+                memoryBudget.unregister(dataBatch);
+            }
+        }
+        sensorEventHandler.removeCallbacksAndMessages(null);
+        // pending callbacks have been removed, quitSafely() would require API 18
+        sensorEventThread.quit();
+    }
+
     public boolean hasRegisteredSensorEventListener(int sensorType) {
         return sensorEventListeners.get(sensorType) != null;
     }
@@ -86,14 +131,22 @@ public class SensorDataManager {
         return sensorEventListener;
     }
 
-    private SensorEventListener createSensorEventListener(final int sensorType) {
+    private SensorEventListener createSensorEventListener(int sensorType) {
+        // look up the batch once instead of for every event
+        final DataBatch dataBatch = getDataBatch(sensorType);
         return new SensorEventListener() {
             @Override
             public void onSensorChanged(SensorEvent event) {
-                float[] values = new float[event.values.length];
-                System.arraycopy(event.values, 0, values, 0, event.values.length);
-                Data data = new Data(event.sensor.getName(), values);
-                getDataBatch(sensorType).addData(data);
+                // values are copied into the columns of the batch, which are
+                // allocated with the first event. No objects are created per event.
+                AllocationTracker allocationTracker = SensorDataManager.this.allocationTracker;
+                if (allocationTracker == null) {
+                    dataBatch.addData(System.currentTimeMillis(), event.values);
+                    return;
+                }
+                allocationTracker.start();
+                dataBatch.addData(System.currentTimeMillis(), event.values);
+                allocationTracker.stop();
             }
 
             @Override
@@ -120,12 +173,44 @@ public class SensorDataManager {
         String sensorName = sensor.getName();
         DataBatch dataBatch = new DataBatch(sensorName);
         dataBatch.setType(sensorType);
+
+        // capacity changes need to be applied on the sensor event thread
+        memoryBudget.register(dataBatch, sensorEventHandler);
         return dataBatch;
     }
 
+    /**
+     * Counts the allocations caused by processing sensor events. Only meant
+     * for debugging, as allocation counting slows down the whole process.
+     */
+    public void setAllocationTrackingEnabled(boolean enabled) {
+        if (enabled == isAllocationTrackingEnabled()) {
+            return;
+        }
+        if (enabled) {
+            AllocationTracker.startCounting();
+            allocationTracker = new AllocationTracker("Sensor event ingestion");
+        } else {
+            allocationTracker = null;
+            AllocationTracker.stopCounting();
+        }
+    }
+
+    public boolean isAllocationTrackingEnabled() {
+        return allocationTracker != null;
+    }
+
     /**
      * Getter & Setter
      */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public AllocationTracker getAllocationTracker() {
+        return allocationTracker;
+    }
+
     public SensorManager getSensorManager() {
         return sensorManager;
     }
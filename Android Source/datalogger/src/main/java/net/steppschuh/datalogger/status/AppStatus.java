@@ -8,6 +8,7 @@ public class AppStatus extends Status {
     private String deviceName = Build.MODEL;
     private ActivityStatus activityStatus = new ActivityStatus();
     private GoogleApiStatus googleApiStatus = new GoogleApiStatus();
+    private MemoryStatus memoryStatus = new MemoryStatus();
 
     public boolean isInitialized() {
         return initialized;
@@ -32,4 +33,12 @@ public class AppStatus extends Status {
     public void setGoogleApiStatus(GoogleApiStatus googleApiStatus) {
         this.googleApiStatus = googleApiStatus;
     }
+
+    public MemoryStatus getMemoryStatus() {
+        return memoryStatus;
+    }
+
+    public void setMemoryStatus(MemoryStatus memoryStatus) {
+        this.memoryStatus = memoryStatus;
+    }
 }
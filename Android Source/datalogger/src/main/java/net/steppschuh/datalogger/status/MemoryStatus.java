@@ -0,0 +1,41 @@
+package net.steppschuh.datalogger.status;
+
+public class MemoryStatus extends Status {
+
+    private long budgetBytes;
+    private long usedBytes;
+    private long headroomBytes;
+    private int dataBatchCount;
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public long getHeadroomBytes() {
+        return headroomBytes;
+    }
+
+    public void setHeadroomBytes(long headroomBytes) {
+        this.headroomBytes = headroomBytes;
+    }
+
+    public int getDataBatchCount() {
+        return dataBatchCount;
+    }
+
+    public void setDataBatchCount(int dataBatchCount) {
+        this.dataBatchCount = dataBatchCount;
+    }
+}
@@ -1,8 +1,8 @@
 package net.steppschuh.datalogger.status;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+
+import net.steppschuh.datalogger.data.JsonSerialization;
 
 public class Status {
 
@@ -32,10 +32,7 @@ public class Status {
     public String toJson() {
         String jsonData = null;
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            jsonData = mapper.writeValueAsString(this);
+            jsonData = JsonSerialization.toJson(this);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
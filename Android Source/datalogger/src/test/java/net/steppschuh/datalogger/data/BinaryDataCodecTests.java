@@ -0,0 +1,189 @@
+package net.steppschuh.datalogger.data;
+
+import net.steppschuh.datalogger.data.request.DataRequestResponse;
+import net.steppschuh.datalogger.data.request.LazyDataRequestResponse;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryDataCodecTests {
+
+    private static DataBatch createDataBatch(String source, int count) {
+        DataBatch dataBatch = new DataBatch(source);
+        dataBatch.setType(1);
+        dataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+        float[] values = new float[3];
+        for (int i = 0; i < count; i++) {
+            values[0] = i * 0.1f;
+            values[1] = -i;
+            values[2] = 9.81f;
+            dataBatch.addData(1000 + i * 20, values);
+        }
+        return dataBatch;
+    }
+
+    @Test
+    public void decodeDataBatch_matchesEncodedBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch("Accelerometer", 50);
+
+        for (byte encoding : new byte[]{BinaryDataCodec.ENCODING_RAW, BinaryDataCodec.ENCODING_TIME_SERIES}) {
+            DataBatch decodedDataBatch = BinaryDataCodec.decodeDataBatch(BinaryDataCodec.encode(dataBatch, encoding));
+            assertEquals("Accelerometer", decodedDataBatch.getSource());
+            assertEquals(1, decodedDataBatch.getType());
+            assertEquals(DataBatch.CAPACITY_UNLIMITED, decodedDataBatch.getCapacity());
+            assertEquals(50, decodedDataBatch.getSize());
+            assertEquals(3, decodedDataBatch.getDimensions());
+            for (int i = 0; i < dataBatch.getSize(); i++) {
+                assertEquals(dataBatch.getTimestamp(i), decodedDataBatch.getTimestamp(i));
+                for (int dimension = 0; dimension < 3; dimension++) {
+                    assertEquals(dataBatch.getValue(i, dimension), decodedDataBatch.getValue(i, dimension), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decodeDataBatch_onQuantizedBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch("Accelerometer", 50);
+        dataBatch.setValueScale(0.01f);
+        int rawSize = BinaryDataCodec.encode(dataBatch, BinaryDataCodec.ENCODING_RAW).length;
+
+        byte[] bytes = BinaryDataCodec.encode(dataBatch, BinaryDataCodec.ENCODING_QUANTIZED);
+        assertTrue(bytes.length < rawSize * 0.6f);
+        DataBatch decodedDataBatch = BinaryDataCodec.decodeDataBatch(bytes);
+        assertEquals(0.01f, decodedDataBatch.getValueScale(), 0);
+        assertEquals(50, decodedDataBatch.getSize());
+        for (int i = 0; i < dataBatch.getSize(); i++) {
+            assertEquals(dataBatch.getTimestamp(i), decodedDataBatch.getTimestamp(i));
+            for (int dimension = 0; dimension < 3; dimension++) {
+                assertEquals(dataBatch.getValue(i, dimension), decodedDataBatch.getValue(i, dimension), 0.005f);
+            }
+        }
+
+        // values that can't be quantized are sent as they are
+        dataBatch.addData(2000, new float[]{Float.NaN, 0, 0});
+        decodedDataBatch = BinaryDataCodec.decodeDataBatch(BinaryDataCodec.encode(dataBatch, BinaryDataCodec.ENCODING_QUANTIZED));
+        assertTrue(Float.isNaN(decodedDataBatch.getValue(50, 0)));
+    }
+
+    @Test
+    public void fromJson_parsesBytesIntoColumns() throws Exception {
+        List<DataBatch> dataBatches = new ArrayList<>();
+        dataBatches.add(createDataBatch("Accelerometer", 20));
+        DataRequestResponse response = new DataRequestResponse(dataBatches);
+        response.setSessionId(7);
+
+        // bean serialization repeats the source for each sample
+        byte[] json = response.toJson().getBytes(BinaryDataCodec.CHARSET);
+        DataRequestResponse decodedResponse = DataRequestResponse.fromJson(json);
+        assertEquals(7, decodedResponse.getSessionId());
+        DataBatch decodedDataBatch = decodedResponse.getDataBatches().get(0);
+        assertEquals("Accelerometer", decodedDataBatch.getSource());
+        assertEquals(DataBatch.CAPACITY_UNLIMITED, decodedDataBatch.getCapacity());
+        assertEquals(20, decodedDataBatch.getSize());
+        assertEquals(3, decodedDataBatch.getDimensions());
+        assertEquals(1380, decodedDataBatch.getTimestamp(19));
+        assertEquals(-19, decodedDataBatch.getValue(19, 1), 0);
+    }
+
+    @Test
+    public void fromJson_onColumnarLayout() throws Exception {
+        DataBatch dataBatch = createDataBatch("Accelerometer", 20);
+        String json = dataBatch.toJson(DataBatch.JSON_LAYOUT_COLUMNS);
+        assertTrue(json.contains("\"timestamps\":[1000,1020,"));
+        assertFalse(json.contains("dataList"));
+
+        List<DataBatch> dataBatches = new ArrayList<>();
+        dataBatches.add(dataBatch);
+        DataRequestResponse response = new DataRequestResponse(dataBatches);
+        byte[] columnsData = response.encode(DataRequestResponse.FORMAT_JSON_COLUMNS);
+        assertTrue(columnsData.length < response.encode(DataRequestResponse.FORMAT_JSON).length);
+
+        DataBatch decodedDataBatch = DataRequestResponse.decode(columnsData).getDataBatches().get(0);
+        assertEquals("Accelerometer", decodedDataBatch.getSource());
+        assertEquals(DataBatch.CAPACITY_UNLIMITED, decodedDataBatch.getCapacity());
+        assertEquals(20, decodedDataBatch.getSize());
+        assertEquals(3, decodedDataBatch.getDimensions());
+        assertEquals(1380, decodedDataBatch.getTimestamp(19));
+        assertEquals(-19, decodedDataBatch.getValue(19, 1), 0);
+        assertEquals(9.81f, decodedDataBatch.getValue(19, 2), 0);
+    }
+
+    @Test
+    public void readData_matchesWrittenData() throws Exception {
+        Data data = new Data(null, new float[]{1.5f, -2});
+        data.setTimestamp(42);
+
+        ByteBuffer buffer = BinaryDataCodec.allocate(BinaryDataCodec.getEncodedSize(data));
+        BinaryDataCodec.writeData(buffer, data);
+        buffer.flip();
+        Data decodedData = BinaryDataCodec.readData(buffer);
+
+        assertEquals(42, decodedData.getTimestamp());
+        assertNull(decodedData.getSource());
+        assertEquals(2, decodedData.getValues().length);
+        assertEquals(-2, decodedData.getValues()[1], 0);
+    }
+
+    @Test
+    public void decode_onBinaryAndJsonResponses() throws Exception {
+        List<DataBatch> dataBatches = new ArrayList<>();
+        dataBatches.add(createDataBatch("Accelerometer", 100));
+        dataBatches.add(createDataBatch(null, 0));
+        DataRequestResponse response = new DataRequestResponse(dataBatches);
+        response.setSessionId(7);
+        response.setDroppedDataCount(3);
+
+        byte[] binaryData = response.encode(DataRequestResponse.FORMAT_BINARY);
+        byte[] jsonData = response.encode(DataRequestResponse.FORMAT_JSON);
+        assertTrue(BinaryDataCodec.isEncoded(binaryData));
+        assertFalse(BinaryDataCodec.isEncoded(jsonData));
+        assertTrue(binaryData.length * 5 < jsonData.length);
+
+        for (byte[] data : new byte[][]{binaryData, jsonData}) {
+            DataRequestResponse decodedResponse = DataRequestResponse.decode(data);
+            assertEquals(7, decodedResponse.getSessionId());
+            assertEquals(3, decodedResponse.getDroppedDataCount());
+            assertEquals(response.getEndTimestamp(), decodedResponse.getEndTimestamp());
+            assertEquals(2, decodedResponse.getDataBatches().size());
+            assertEquals(100, decodedResponse.getDataBatches().get(0).getSize());
+            assertEquals(2980, decodedResponse.getDataBatches().get(0).getTimestamp(99));
+            assertEquals(0, decodedResponse.getDataBatches().get(1).getSize());
+        }
+    }
+
+    @Test
+    public void decodeDataBatch_onLazyResponse() throws Exception {
+        List<DataBatch> dataBatches = new ArrayList<>();
+        dataBatches.add(createDataBatch("Accelerometer", 30));
+        dataBatches.add(createDataBatch("Gyroscope", 40));
+        DataRequestResponse response = new DataRequestResponse(dataBatches);
+        response.setSessionId(7);
+        response.setUpdateInterval(250);
+
+        LazyDataRequestResponse lazyResponse = LazyDataRequestResponse.decode(response.encode(DataRequestResponse.FORMAT_BINARY));
+        assertEquals(7, lazyResponse.getSessionId());
+        assertEquals(250, lazyResponse.getUpdateInterval());
+        assertEquals(2, lazyResponse.getBatchCount());
+        assertEquals("Gyroscope", lazyResponse.getDataBatch(1).getSource());
+        assertEquals(40, lazyResponse.getSampleCount(1));
+        assertEquals(0, lazyResponse.getDataBatch(1).getSize());
+
+        // only the requested batch gets decoded
+        DataBatch decodedDataBatch = lazyResponse.decodeDataBatch(1);
+        assertTrue(lazyResponse.isDecoded(1));
+        assertFalse(lazyResponse.isDecoded(0));
+        assertEquals(40, decodedDataBatch.getSize());
+        assertEquals(-39, decodedDataBatch.getValue(39, 1), 0);
+        assertEquals(0, lazyResponse.getDataBatch(0).getSize());
+    }
+
+}
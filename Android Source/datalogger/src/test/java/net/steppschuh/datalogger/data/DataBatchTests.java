@@ -0,0 +1,246 @@
+package net.steppschuh.datalogger.data;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DataBatchTests {
+
+    private static DataBatch createDataBatch(int capacity, int count) {
+        DataBatch dataBatch = new DataBatch("Test");
+        dataBatch.setCapacity(capacity);
+        float[] values = new float[3];
+        for (int i = 0; i < count; i++) {
+            values[0] = i;
+            values[1] = i * 2;
+            values[2] = i * 3;
+            dataBatch.addData(1000 + i, values);
+        }
+        return dataBatch;
+    }
+
+    @Test
+    public void addData_copiesValuesIntoColumns() throws Exception {
+        DataBatch dataBatch = createDataBatch(DataBatch.CAPACITY_UNLIMITED, 100);
+
+        assertEquals(100, dataBatch.getSize());
+        assertEquals(3, dataBatch.getDimensions());
+        assertEquals(1042, dataBatch.getTimestamp(42));
+        assertEquals(126, dataBatch.getValue(42, 2), 0);
+    }
+
+    @Test
+    public void addData_onFullBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 25);
+
+        assertEquals(10, dataBatch.getSize());
+        assertEquals(1015, dataBatch.getOldestData().getTimestamp());
+        assertEquals(1024, dataBatch.getNewestData().getTimestamp());
+        assertEquals(24, dataBatch.getNewestData().getValues()[0], 0);
+    }
+
+    @Test
+    public void addData_onUnlimitedCapacity() throws Exception {
+        DataBatch dataBatch = createDataBatch(DataBatch.CAPACITY_UNLIMITED, 1000);
+
+        assertEquals(1000, dataBatch.getSize());
+        assertEquals(1000, dataBatch.getTimestamp(0));
+        assertEquals(1999, dataBatch.getTimestamp(999));
+    }
+
+    @Test
+    public void setCapacity_onWrappedBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 25);
+        dataBatch.setCapacity(4);
+
+        assertEquals(4, dataBatch.getSize());
+        assertEquals(1021, dataBatch.getTimestamp(0));
+        assertEquals(1024, dataBatch.getTimestamp(3));
+
+        dataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+        dataBatch.addData(2000, new float[]{1, 2, 3});
+        assertEquals(5, dataBatch.getSize());
+        assertEquals(1021, dataBatch.getTimestamp(0));
+        assertEquals(2000, dataBatch.getTimestamp(4));
+    }
+
+    @Test
+    public void iterator_onWrappedBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 25);
+
+        DataIterator iterator = dataBatch.iterator();
+        long expectedTimestamp = 1015;
+        while (iterator.hasNext()) {
+            Data data = iterator.next();
+            assertEquals(expectedTimestamp, data.getTimestamp());
+            assertEquals((expectedTimestamp - 1000) * 3, data.getValues()[2], 0);
+            expectedTimestamp++;
+        }
+        assertEquals(1025, expectedTimestamp);
+    }
+
+    @Test
+    public void getDataList_onEmptyBatch() throws Exception {
+        DataBatch dataBatch = new DataBatch("Test");
+
+        assertEquals(0, dataBatch.getDataList().size());
+        assertNull(dataBatch.getNewestData());
+        assertNull(dataBatch.getOldestData());
+    }
+
+    @Test
+    public void getDataList_matchesColumns() throws Exception {
+        DataBatch dataBatch = createDataBatch(DataBatch.CAPACITY_DEFAULT, 20);
+
+        List<Data> dataList = dataBatch.getDataList();
+        assertEquals(20, dataList.size());
+        for (int i = 0; i < dataList.size(); i++) {
+            assertEquals(dataBatch.getTimestamp(i), dataList.get(i).getTimestamp());
+            assertEquals(dataBatch.getValue(i, 1), dataList.get(i).getValues()[1], 0);
+            assertEquals("Test", dataList.get(i).getSource());
+        }
+    }
+
+    @Test
+    public void getDataSince_onValidTimestamp() throws Exception {
+        DataBatch dataBatch = createDataBatch(DataBatch.CAPACITY_DEFAULT, 20);
+
+        List<Data> dataSince = dataBatch.getDataSince(1014);
+        assertEquals(5, dataSince.size());
+        assertEquals(1015, dataSince.get(0).getTimestamp());
+        assertEquals(1019, dataSince.get(4).getTimestamp());
+    }
+
+    @Test
+    public void indexOfFirstAfter_onWrappedBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 25);
+
+        assertEquals(0, dataBatch.indexOfFirstAfter(0));
+        assertEquals(0, dataBatch.indexOfFirstAfter(1014));
+        assertEquals(3, dataBatch.indexOfFirstAfter(1017));
+        assertEquals(10, dataBatch.indexOfFirstAfter(1024));
+    }
+
+    @Test
+    public void getDataBetween_onValidTimestamps() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 25);
+
+        List<Data> dataBetween = dataBatch.getDataBetween(1016, 1020);
+        assertEquals(4, dataBetween.size());
+        assertEquals(1017, dataBetween.get(0).getTimestamp());
+        assertEquals(1020, dataBetween.get(3).getTimestamp());
+        assertEquals(0, dataBatch.getDataBetween(1020, 1016).size());
+    }
+
+    @Test
+    public void subView_onWrappedBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 25);
+
+        DataBatchView view = dataBatch.subView(2, 6);
+        assertEquals(4, view.getSize());
+        assertEquals(1017, view.getTimestamp(0));
+        assertEquals(20, view.getValue(3, 0), 0);
+
+        DataBatch copy = view.toDataBatch();
+        assertEquals(4, copy.getSize());
+        assertEquals(10, copy.getCapacity());
+        assertEquals(1020, copy.getTimestamp(3));
+    }
+
+    @Test
+    public void removeDataBefore_onValidTimestamp() throws Exception {
+        DataBatch dataBatch = createDataBatch(DataBatch.CAPACITY_DEFAULT, 20);
+        dataBatch.removeDataBefore(1009);
+
+        assertEquals(10, dataBatch.getSize());
+        assertEquals(1010, dataBatch.getTimestamp(0));
+    }
+
+    @Test
+    public void readSince_returnsNewData() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 5);
+
+        DataReadResult readResult = dataBatch.readSince(0);
+        assertEquals(5, readResult.getDataBatch().getSize());
+        assertEquals(5, readResult.getNextCursor());
+        assertEquals(0, readResult.getDroppedCount());
+
+        dataBatch.addData(2000, new float[]{1, 2, 3});
+        readResult = dataBatch.readSince(readResult.getNextCursor());
+        assertEquals(1, readResult.getDataBatch().getSize());
+        assertEquals(2000, readResult.getDataBatch().getTimestamp(0));
+        assertEquals(6, readResult.getNextCursor());
+
+        readResult = dataBatch.readSince(readResult.getNextCursor());
+        assertEquals(0, readResult.getDataBatch().getSize());
+        assertEquals(6, readResult.getNextCursor());
+    }
+
+    @Test
+    public void readSince_onOverwrittenData() throws Exception {
+        DataBatch dataBatch = createDataBatch(10, 25);
+
+        DataReadResult readResult = dataBatch.readSince(3);
+        assertEquals(12, readResult.getDroppedCount());
+        assertEquals(10, readResult.getDataBatch().getSize());
+        assertEquals(1015, readResult.getDataBatch().getTimestamp(0));
+        assertEquals(25, readResult.getNextCursor());
+
+        dataBatch.removeDataBefore(1019);
+        assertEquals(20, dataBatch.getOldestSequence());
+        assertEquals(25, dataBatch.getWriteSequence());
+    }
+
+    @Test
+    public void readSince_whileWriting() throws Exception {
+        final DataBatch dataBatch = new DataBatch("Test");
+        dataBatch.setCapacity(64);
+        final int sampleCount = 200000;
+
+        Thread writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] values = new float[3];
+                for (int i = 0; i < sampleCount; i++) {
+                    values[0] = i;
+                    values[1] = -i;
+                    values[2] = i % 100;
+                    dataBatch.addData(i, values);
+                }
+            }
+        });
+        writerThread.start();
+
+        long cursor = 0;
+        long readCount = 0;
+        long droppedCount = 0;
+        while (cursor < sampleCount) {
+            DataReadResult readResult = dataBatch.readSince(cursor);
+            DataBatch newData = readResult.getDataBatch();
+            for (int i = 0; i < newData.getSize(); i++) {
+                long timestamp = newData.getTimestamp(i);
+                assertEquals(newData.getOldestSequence() + i, timestamp);
+                assertEquals(timestamp, newData.getValue(i, 0), 0);
+                assertEquals(-timestamp, newData.getValue(i, 1), 0);
+                assertEquals(timestamp % 100, newData.getValue(i, 2), 0);
+            }
+            readCount += newData.getSize();
+            droppedCount += readResult.getDroppedCount();
+            cursor = readResult.getNextCursor();
+        }
+        writerThread.join();
+
+        assertEquals(sampleCount, readCount + droppedCount);
+    }
+
+    @Test
+    public void getFrequency_onShortBatch() throws Exception {
+        DataBatch dataBatch = createDataBatch(DataBatch.CAPACITY_DEFAULT, 20);
+
+        assertEquals(20 / 0.019f, dataBatch.getFrequency(), 0.01f);
+    }
+
+}
@@ -0,0 +1,59 @@
+package net.steppschuh.datalogger.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DataRollupTests {
+
+    @Test
+    public void add_aggregatesBuckets() throws Exception {
+        DataRollup rollup = new DataRollup(new long[]{10, 100}, 4);
+        for (int i = 0; i < 100; i++) {
+            rollup.add(1000 + i, new float[]{i, -i});
+        }
+
+        RollupLevel fineLevel = rollup.getLevel(0);
+        assertEquals(4, fineLevel.size());
+        assertEquals(1060, fineLevel.getTimestamp(0));
+        assertEquals(10, fineLevel.getCount(0));
+        assertEquals(60, fineLevel.getMinimum(0, 0), 0);
+        assertEquals(69, fineLevel.getMaximum(0, 0), 0);
+        assertEquals(64.5f, fineLevel.getMean(0, 0), 0);
+        assertEquals(-69, fineLevel.getMinimum(0, 1), 0);
+
+        RollupLevel coarseLevel = rollup.getLevel(1);
+        assertEquals(1, coarseLevel.size());
+        assertEquals(100, coarseLevel.getCount(0));
+        assertEquals(49.5f, coarseLevel.getMean(0, 0), 0);
+    }
+
+    @Test
+    public void getLevel_picksCoarsestLevel() throws Exception {
+        DataRollup rollup = new DataRollup();
+
+        assertSame(rollup.getLevel(3), rollup.getLevel(0, 600000, 60));
+        assertSame(rollup.getLevel(1), rollup.getLevel(0, 20000, 200));
+        assertSame(rollup.getLevel(0), rollup.getLevel(0, 20000, 1000));
+        assertNull(rollup.getLevel(0, 1000, 1000));
+    }
+
+    @Test
+    public void getRollupDataBetween_onLongRange() throws Exception {
+        DataBatch dataBatch = new DataBatch("Test");
+        dataBatch.setRollupEnabled(true);
+        for (int i = 0; i < 10000; i++) {
+            dataBatch.addData(i, new float[]{i % 10});
+        }
+
+        DataBatch rollupDataBatch = dataBatch.getRollupDataBetween(0, 10000, 100);
+        assertEquals(100, rollupDataBatch.getSize());
+        assertEquals(50, rollupDataBatch.getTimestamp(0));
+        assertEquals(4.5f, rollupDataBatch.getValue(0, 0), 0);
+
+        assertNull(dataBatch.getRollupDataBetween(0, 100, 100));
+    }
+
+}
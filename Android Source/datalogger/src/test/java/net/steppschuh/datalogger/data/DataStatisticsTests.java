@@ -0,0 +1,39 @@
+package net.steppschuh.datalogger.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataStatisticsTests {
+
+    @Test
+    public void getStatistics_onWrappedBatch() throws Exception {
+        DataBatch dataBatch = new DataBatch("Test");
+        dataBatch.setCapacity(10);
+        dataBatch.addData(990, new float[]{0, 0});
+        DataStatistics statistics = dataBatch.getStatistics();
+        float[] values = new float[2];
+        for (int i = 1; i < 25; i++) {
+            values[0] = i % 7;
+            values[1] = -i;
+            dataBatch.addData(990 + i * 10, values);
+        }
+
+        // samples 15 to 24 are left
+        assertEquals(10, statistics.getCount());
+        assertEquals(0, statistics.getMinimum(0), 0);
+        assertEquals(6, statistics.getMaximum(0), 0);
+        assertEquals(-24, statistics.getMinimum(1), 0);
+        assertEquals(-15, statistics.getMaximum(1), 0);
+        assertEquals(-19.5f, statistics.getMean(1), 0.0001f);
+        assertEquals(9.1667f, statistics.getVariance(1), 0.0001f);
+        assertEquals(100, statistics.getFrequency(), 0.01f);
+
+        dataBatch.removeDataBefore(1210);
+        assertEquals(2, statistics.getCount());
+        assertEquals(-24, statistics.getMinimum(1), 0);
+        assertEquals(-23, statistics.getMaximum(1), 0);
+        assertEquals(-23.5f, statistics.getMean(1), 0.0001f);
+    }
+
+}
@@ -0,0 +1,74 @@
+package net.steppschuh.datalogger.data;
+
+import net.steppschuh.datalogger.status.MemoryStatus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTests {
+
+    private static void addData(DataBatch dataBatch, int count) {
+        float[] values = new float[3];
+        for (int i = 0; i < count; i++) {
+            dataBatch.addData(System.currentTimeMillis(), values);
+        }
+    }
+
+    @Test
+    public void rebalance_onUnlimitedBatch() throws Exception {
+        MemoryBudget memoryBudget = new MemoryBudget(20000);
+        DataBatch dataBatch = new DataBatch("Test");
+        dataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+        addData(dataBatch, 5000);
+        memoryBudget.register(dataBatch, null);
+
+        memoryBudget.rebalance();
+        Thread.sleep(10);
+        memoryBudget.rebalance();
+
+        assertEquals(MemoryBudget.CAPACITY_MINIMUM, dataBatch.getCapacity());
+        assertEquals(MemoryBudget.CAPACITY_MINIMUM, dataBatch.getSize());
+        assertTrue(memoryBudget.getUsedBytes() <= 20000);
+    }
+
+    @Test
+    public void rebalance_onBudgetBelowMinimumCapacities() throws Exception {
+        MemoryBudget memoryBudget = new MemoryBudget(20000);
+        DataBatch[] dataBatches = new DataBatch[50];
+        for (int i = 0; i < dataBatches.length; i++) {
+            dataBatches[i] = new DataBatch("Test " + i);
+            memoryBudget.register(dataBatches[i], null);
+        }
+
+        memoryBudget.rebalance();
+        Thread.sleep(10);
+        addData(dataBatches[0], 300);
+        memoryBudget.rebalance();
+
+        assertTrue(dataBatches[1].getCapacity() < MemoryBudget.CAPACITY_MINIMUM);
+        assertTrue(memoryBudget.getUsedBytes() <= 20000);
+    }
+
+    @Test
+    public void rebalance_weightsQuotasBySamplingRate() throws Exception {
+        MemoryBudget memoryBudget = new MemoryBudget(400000);
+        DataBatch fastDataBatch = new DataBatch("Fast");
+        DataBatch slowDataBatch = new DataBatch("Slow");
+        memoryBudget.register(fastDataBatch, null);
+        memoryBudget.register(slowDataBatch, null);
+
+        memoryBudget.rebalance();
+        Thread.sleep(10);
+        addData(fastDataBatch, 300);
+        addData(slowDataBatch, 100);
+        memoryBudget.rebalance();
+
+        assertEquals(15000, fastDataBatch.getCapacity());
+        assertEquals(5000, slowDataBatch.getCapacity());
+        assertEquals(300, fastDataBatch.getSize());
+        assertEquals(400000, ((MemoryStatus) memoryBudget.getStatus()).getBudgetBytes());
+    }
+
+}
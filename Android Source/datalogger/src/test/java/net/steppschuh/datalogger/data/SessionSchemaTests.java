@@ -0,0 +1,71 @@
+package net.steppschuh.datalogger.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionSchemaTests {
+
+    @Test
+    public void addSource_returnsStableIds() throws Exception {
+        SessionSchema sessionSchema = new SessionSchema(42);
+
+        assertEquals(0, sessionSchema.addSource(1, "Accelerometer"));
+        assertEquals(1, sessionSchema.addSource(4, "Gyroscope"));
+        assertEquals(0, sessionSchema.addSource(1, "Accelerometer"));
+        assertEquals(SessionSchema.SOURCE_ID_NOT_SET, sessionSchema.getSourceId(2, "Magnetometer"));
+    }
+
+    @Test
+    public void resolveSource_afterSerialization() throws Exception {
+        SessionSchema sessionSchema = new SessionSchema(42);
+        sessionSchema.addSource(1, "Accelerometer");
+        sessionSchema.addSource(4, "Gyroscope", 3, 0.01f);
+
+        DataBatch dataBatch = new DataBatch();
+        dataBatch.setSourceId(1);
+        dataBatch.addData(1000, new float[]{1, 2, 3});
+        String json = dataBatch.toJson();
+        assertFalse(json.contains("\"source\""));
+
+        SessionSchema receivedSchema = SessionSchema.fromJson(sessionSchema.toJson());
+        assertEquals(42, receivedSchema.getSessionId());
+        assertTrue(receivedSchema.resolveSource(dataBatch));
+        assertEquals("Gyroscope", dataBatch.getSource());
+        assertEquals(4, dataBatch.getType());
+        assertEquals(3, receivedSchema.getSource(1).getDimensions());
+        assertEquals(0.01f, receivedSchema.getSource(1).getValueScale(), 0);
+
+        dataBatch.setSourceId(5);
+        assertFalse(receivedSchema.resolveSource(dataBatch));
+        assertNull(receivedSchema.getSource(-1));
+    }
+
+    @Test
+    public void decodeDataBatch_onSourceIdOnlyBatch() throws Exception {
+        SessionSchema sessionSchema = new SessionSchema(42);
+        sessionSchema.addSource(4, "Gyroscope", 3, 0.01f);
+
+        DataBatch dataBatch = new DataBatch("Gyroscope");
+        dataBatch.setType(4);
+        dataBatch.setSourceId(0);
+        dataBatch.addData(1000, new float[]{1, 2, 3});
+        int fullSize = BinaryDataCodec.encode(dataBatch, BinaryDataCodec.ENCODING_TIME_SERIES).length;
+
+        // without a source, only the id needs to be sent
+        dataBatch.setSource(null);
+        byte[] bytes = BinaryDataCodec.encode(dataBatch, BinaryDataCodec.ENCODING_TIME_SERIES);
+        assertEquals(fullSize - 22, bytes.length);
+
+        DataBatch decodedDataBatch = BinaryDataCodec.decodeDataBatch(bytes);
+        assertTrue(sessionSchema.resolveSource(decodedDataBatch));
+        assertEquals("Gyroscope", decodedDataBatch.getSource());
+        assertEquals(4, decodedDataBatch.getType());
+        assertEquals(1, decodedDataBatch.getSize());
+        assertEquals(3, decodedDataBatch.getValue(0, 2), 0);
+    }
+
+}
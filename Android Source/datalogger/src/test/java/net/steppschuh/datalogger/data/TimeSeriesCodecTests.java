@@ -0,0 +1,118 @@
+package net.steppschuh.datalogger.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeSeriesCodecTests {
+
+    private static void assertRoundTrip(DataBatch dataBatch) throws Exception {
+        DataBatch decodedDataBatch = TimeSeriesCodec.decode(TimeSeriesCodec.encode(dataBatch));
+        assertEquals(dataBatch.getSize(), decodedDataBatch.getSize());
+        for (int i = 0; i < dataBatch.getSize(); i++) {
+            assertEquals(dataBatch.getTimestamp(i), decodedDataBatch.getTimestamp(i));
+            for (int dimension = 0; dimension < dataBatch.getDimensions(); dimension++) {
+                int expectedBits = Float.floatToRawIntBits(dataBatch.getValue(i, dimension));
+                assertEquals(expectedBits, Float.floatToRawIntBits(decodedDataBatch.getValue(i, dimension)));
+            }
+        }
+    }
+
+    /**
+     * Creates a batch with a signal similar to the one of the specified sensor type
+     */
+    private static DataBatch createSensorDataBatch(int sensorType, int count) {
+        Random random = new Random(sensorType);
+        DataBatch dataBatch = new DataBatch("Sensor " + sensorType);
+        dataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+        float[] values = new float[sensorType == 5 ? 1 : 3];
+        long timestamp = 1466000000000L;
+        for (int i = 0; i < count; i++) {
+            switch (sensorType) {
+                case 1: {
+                    // accelerometer, 50 Hz with jitter
+                    timestamp += 20 + random.nextInt(3) - 1;
+                    values[0] = (float) Math.sin(i / 20.0) + random.nextFloat() * 0.05f;
+                    values[1] = (float) Math.cos(i / 20.0) + random.nextFloat() * 0.05f;
+                    values[2] = 9.81f + random.nextFloat() * 0.05f;
+                    break;
+                }
+                case 4: {
+                    // gyroscope, 100 Hz
+                    timestamp += 10;
+                    for (int dimension = 0; dimension < values.length; dimension++) {
+                        values[dimension] = (float) Math.sin((i + dimension * 7) / 50.0) * 0.5f;
+                    }
+                    break;
+                }
+                case 5: {
+                    // light, only changes occasionally
+                    timestamp += 200;
+                    if (random.nextInt(10) == 0) {
+                        values[0] = random.nextInt(500);
+                    }
+                    break;
+                }
+                default: {
+                    // noise
+                    timestamp += random.nextInt(50);
+                    for (int dimension = 0; dimension < values.length; dimension++) {
+                        values[dimension] = random.nextFloat() * 1000 - 500;
+                    }
+                    break;
+                }
+            }
+            dataBatch.addData(timestamp, values);
+        }
+        return dataBatch;
+    }
+
+    @Test
+    public void decode_onEmptyBatch() throws Exception {
+        assertRoundTrip(new DataBatch("Test"));
+    }
+
+    @Test
+    public void decode_onSpecialValues() throws Exception {
+        DataBatch dataBatch = new DataBatch("Test");
+        float[][] values = new float[][]{
+                {0, -0f, Float.NaN},
+                {Float.MAX_VALUE, Float.MIN_VALUE, Float.NEGATIVE_INFINITY},
+                {1, 1, 1},
+                {1, 1.0000001f, -1},
+                {0, 0, Float.POSITIVE_INFINITY}
+        };
+        long[] timestamps = new long[]{-5, 0, Long.MAX_VALUE / 2, 3, 3};
+        for (int i = 0; i < values.length; i++) {
+            dataBatch.addData(timestamps[i], values[i]);
+        }
+        assertRoundTrip(dataBatch);
+    }
+
+    @Test
+    public void decode_onSensorData() throws Exception {
+        for (int sensorType : new int[]{0, 1, 4, 5}) {
+            assertRoundTrip(createSensorDataBatch(sensorType, 2000));
+        }
+    }
+
+    @Test
+    public void encode_onSensorData() throws Exception {
+        // minimum ratios between raw and encoded size, noisy sensors compress less
+        int[] sensorTypes = new int[]{0, 1, 4, 5};
+        float[] minimumCompressionRatios = new float[]{1.4f, 1.7f, 1.5f, 8};
+        for (int i = 0; i < sensorTypes.length; i++) {
+            DataBatch dataBatch = createSensorDataBatch(sensorTypes[i], 500);
+            int rawSize = dataBatch.getSize() * dataBatch.getBytesPerSample();
+            int encodedSize = TimeSeriesCodec.encode(dataBatch).length;
+            float compressionRatio = (float) rawSize / encodedSize;
+
+            assertTrue(encodedSize <= TimeSeriesCodec.getMaximumEncodedSize(dataBatch.getSize(), dataBatch.getDimensions()));
+            assertTrue("Compression ratio of sensor type " + sensorTypes[i] + ": " + compressionRatio, compressionRatio > minimumCompressionRatios[i]);
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package net.steppschuh.datalogger.data.request;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveUpdateIntervalTests {
+
+    @Test
+    public void update_onCongestedLink() throws Exception {
+        AdaptiveUpdateInterval adaptiveUpdateInterval = new AdaptiveUpdateInterval(100);
+        long maximumInterval = AdaptiveUpdateInterval.getMaximumInterval(500, 100, 1000);
+        assertEquals(2500, maximumInterval);
+
+        // back off while congested, limited by the ring headroom
+        assertEquals(200, adaptiveUpdateInterval.update(true, maximumInterval));
+        assertEquals(400, adaptiveUpdateInterval.update(true, maximumInterval));
+        assertEquals(800, adaptiveUpdateInterval.update(true, maximumInterval));
+        assertEquals(1600, adaptiveUpdateInterval.update(true, maximumInterval));
+        assertEquals(2500, adaptiveUpdateInterval.update(true, maximumInterval));
+        assertTrue(adaptiveUpdateInterval.isAdapted());
+
+        // recover towards the requested interval
+        assertEquals(1300, adaptiveUpdateInterval.update(false, maximumInterval));
+        assertEquals(700, adaptiveUpdateInterval.update(false, maximumInterval));
+        for (int updateIndex = 0; updateIndex < 10; updateIndex++) {
+            adaptiveUpdateInterval.update(false, maximumInterval);
+        }
+        assertEquals(100, adaptiveUpdateInterval.getCurrentInterval());
+        assertFalse(adaptiveUpdateInterval.isAdapted());
+
+        // the requested interval is kept even if the ring fills up faster
+        assertEquals(100, adaptiveUpdateInterval.update(true, 50));
+    }
+
+}
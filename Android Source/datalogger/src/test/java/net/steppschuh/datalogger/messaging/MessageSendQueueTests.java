@@ -0,0 +1,85 @@
+package net.steppschuh.datalogger.messaging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageSendQueueTests {
+
+    @Test
+    public void enqueue_onFullQueue() throws Exception {
+        final CountDownLatch firstMessageStarted = new CountDownLatch(1);
+        final CountDownLatch sendingAllowed = new CountDownLatch(1);
+        final CountDownLatch allMessagesSent = new CountDownLatch(3);
+        final List<String> sentMessages = Collections.synchronizedList(new ArrayList<String>());
+
+        MessageSendQueue messageSendQueue = new MessageSendQueue(new MessageSendQueue.MessageSender() {
+            @Override
+            public void sendMessage(String path, byte[] data, String nodeId) throws Exception {
+                firstMessageStarted.countDown();
+                sendingAllowed.await();
+                sentMessages.add(path + new String(data, GoogleApiMessenger.DEFAULT_CHARSET));
+                allMessagesSent.countDown();
+            }
+        });
+        messageSendQueue.setCapacity(2);
+        messageSendQueue.setOverflowPolicy(MessageSendQueue.OVERFLOW_COALESCE);
+
+        // the first message is taken by the sender thread, which then blocks
+        messageSendQueue.enqueue("/a", "1".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), "node");
+        assertTrue(firstMessageStarted.await(1, TimeUnit.SECONDS));
+        messageSendQueue.enqueue("/b", "2".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), "node");
+        messageSendQueue.enqueue("/c", "3".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), "node");
+        messageSendQueue.enqueue("/b", "4".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), "node");
+        assertEquals(2, messageSendQueue.getQueueDepth("node"));
+        assertEquals(1, messageSendQueue.getCoalescedMessageCount());
+
+        // without a message of the same path, the oldest one is dropped
+        messageSendQueue.enqueue("/d", "5".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), "node");
+        assertEquals(1, messageSendQueue.getDroppedMessageCount());
+
+        sendingAllowed.countDown();
+        assertTrue(allMessagesSent.await(1, TimeUnit.SECONDS));
+        assertEquals("[/a1, /c3, /d5]", sentMessages.toString());
+        assertEquals(0, messageSendQueue.getQueueDepth());
+        messageSendQueue.shutdown();
+    }
+
+    @Test
+    public void shutdown_onQueuedMessages() throws Exception {
+        final CountDownLatch firstMessageStarted = new CountDownLatch(1);
+        final CountDownLatch senderInterrupted = new CountDownLatch(1);
+        MessageSendQueue messageSendQueue = new MessageSendQueue(new MessageSendQueue.MessageSender() {
+            @Override
+            public void sendMessage(String path, byte[] data, String nodeId) throws Exception {
+                firstMessageStarted.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException ex) {
+                    senderInterrupted.countDown();
+                    throw ex;
+                }
+            }
+        });
+
+        assertTrue(messageSendQueue.enqueue("/a", new byte[0], "node"));
+        assertTrue(firstMessageStarted.await(1, TimeUnit.SECONDS));
+        assertTrue(messageSendQueue.enqueue("/b", new byte[0], "node"));
+        assertEquals(1, messageSendQueue.getQueueDepth());
+
+        // queued messages are discarded and the sender thread is stopped
+        messageSendQueue.shutdown();
+        assertTrue(senderInterrupted.await(1, TimeUnit.SECONDS));
+        assertEquals(0, messageSendQueue.getQueueDepth());
+        assertFalse(messageSendQueue.enqueue("/c", new byte[0], "node"));
+    }
+
+}
@@ -0,0 +1,57 @@
+package net.steppschuh.datalogger.messaging;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadCompressorTests {
+
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void decompress_matchesCompressedData() throws Exception {
+        PayloadCompressor payloadCompressor = new PayloadCompressor(100, PayloadCompressor.LEVEL_STRONG);
+        byte[] smallData = "ping".getBytes(GoogleApiMessenger.DEFAULT_CHARSET);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("{\"timestamp\":").append(1000 + i * 20).append(",\"values\":[0.0,9.81]}");
+        }
+        byte[] largeData = sb.toString().getBytes(GoogleApiMessenger.DEFAULT_CHARSET);
+
+        // small payloads are sent as they are
+        byte[] smallPayload = payloadCompressor.compress(smallData);
+        assertSame(smallData, smallPayload);
+        ByteBuffer smallBuffer = payloadCompressor.decompress(smallPayload);
+        assertSame(smallPayload, smallBuffer.array());
+        assertArrayEquals(smallData, toByteArray(smallBuffer));
+
+        // unless they start with a header byte
+        byte[] headerData = new byte[]{PayloadCompressor.HEADER_DEFLATE, 2, 3};
+        byte[] headerPayload = payloadCompressor.compress(headerData);
+        assertEquals(PayloadCompressor.HEADER_UNCOMPRESSED, headerPayload[0]);
+        assertEquals(headerData.length + PayloadCompressor.HEADER_SIZE, headerPayload.length);
+        ByteBuffer headerBuffer = payloadCompressor.decompress(headerPayload);
+        assertSame(headerPayload, headerBuffer.array());
+        assertArrayEquals(headerData, toByteArray(headerBuffer));
+
+        byte[] largePayload = payloadCompressor.compress(largeData);
+        assertEquals(PayloadCompressor.HEADER_DEFLATE, largePayload[0]);
+        assertTrue(largePayload.length * 5 < largeData.length);
+        assertArrayEquals(largeData, toByteArray(payloadCompressor.decompress(largePayload)));
+        assertTrue(payloadCompressor.getCompressionRatio() > 5);
+        assertTrue(payloadCompressor.getLastCompressionRatio() > 5);
+        assertEquals(1, payloadCompressor.getCompressionTimeTracker().getTrackingCount());
+        assertTrue(payloadCompressor.getCompressionTimeTracker().getDuration() > 0);
+        assertEquals(1, payloadCompressor.getDecompressionTimeTracker().getTrackingCount());
+    }
+
+}
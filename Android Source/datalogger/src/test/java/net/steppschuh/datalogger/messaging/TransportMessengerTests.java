@@ -0,0 +1,97 @@
+package net.steppschuh.datalogger.messaging;
+
+import net.steppschuh.datalogger.data.DataBatch;
+import net.steppschuh.datalogger.data.request.DataRequestResponse;
+import net.steppschuh.datalogger.data.request.LazyDataRequestResponse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class TransportMessengerTests {
+
+    private static class ReceivedMessage {
+
+        private final String path;
+        private final byte[] payload;
+        private final String sourceNodeId;
+
+        private ReceivedMessage(String path, byte[] payload, String sourceNodeId) {
+            this.path = path;
+            this.payload = payload;
+            this.sourceNodeId = sourceNodeId;
+        }
+
+    }
+
+    private static Transport.MessageListener getMessageListener(final BlockingQueue<ReceivedMessage> receivedMessages) {
+        return new Transport.MessageListener() {
+            @Override
+            public void onMessageReceived(String path, byte[] payload, String sourceNodeId) {
+                receivedMessages.add(new ReceivedMessage(path, payload, sourceNodeId));
+            }
+        };
+    }
+
+    private static DataRequestResponse createDataRequestResponse(int count) {
+        DataBatch dataBatch = new DataBatch("Accelerometer");
+        dataBatch.setType(1);
+        dataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+        float[] values = new float[3];
+        for (int i = 0; i < count; i++) {
+            values[2] = 9.81f;
+            dataBatch.addData(1000 + i * 20, values);
+        }
+        List<DataBatch> dataBatches = new ArrayList<>();
+        dataBatches.add(dataBatch);
+        DataRequestResponse response = new DataRequestResponse(dataBatches);
+        response.setSessionId(7);
+        return response;
+    }
+
+    @Test
+    public void sendMessageToNode_onLoopbackTransports() throws Exception {
+        LoopbackTransport watchTransport = new LoopbackTransport("watch");
+        LoopbackTransport phoneTransport = new LoopbackTransport("phone");
+        LoopbackTransport.connect(watchTransport, phoneTransport);
+        TransportMessenger watchMessenger = new TransportMessenger(watchTransport);
+        TransportMessenger phoneMessenger = new TransportMessenger(phoneTransport);
+        BlockingQueue<ReceivedMessage> receivedMessages = new LinkedBlockingQueue<>();
+        phoneMessenger.setMessageListener(getMessageListener(receivedMessages));
+
+        try {
+            // responses are queued, compressed, sent and decoded on the other node
+            byte[] data = createDataRequestResponse(500).encode(DataRequestResponse.FORMAT_JSON);
+            watchMessenger.sendMessageToNode("/response", data, "phone");
+            ReceivedMessage receivedMessage = receivedMessages.poll(1, TimeUnit.SECONDS);
+            assertNotNull(receivedMessage);
+            assertEquals("/response", receivedMessage.path);
+            assertEquals("watch", receivedMessage.sourceNodeId);
+            assertEquals(PayloadCompressor.HEADER_DEFLATE, receivedMessage.payload[0]);
+
+            LazyDataRequestResponse response = LazyDataRequestResponse.decode(phoneMessenger.getPayloadCompressor().decompress(receivedMessage.payload));
+            assertEquals(7, response.getSessionId());
+            assertEquals(500, response.decodeDataBatch(0).getSize());
+
+            // messages to the local node don't use the transport
+            byte[] pingData = "1".getBytes(GoogleApiMessenger.DEFAULT_CHARSET);
+            phoneMessenger.sendMessageToNode("/ping", pingData, null);
+            receivedMessage = receivedMessages.poll(1, TimeUnit.SECONDS);
+            assertNotNull(receivedMessage);
+            assertEquals(TransportMessenger.DEFAULT_NODE_ID, receivedMessage.sourceNodeId);
+            assertSame(pingData, receivedMessage.payload);
+        } finally {
+            watchMessenger.shutdown();
+            phoneMessenger.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package net.steppschuh.datalogger.messaging;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransportTests {
+
+    private static Transport.MessageListener getMessageListener(final BlockingQueue<String> receivedMessages) {
+        return new Transport.MessageListener() {
+            @Override
+            public void onMessageReceived(String path, byte[] data, String sourceNodeId) {
+                receivedMessages.add(sourceNodeId + path + new String(data, GoogleApiMessenger.DEFAULT_CHARSET));
+            }
+        };
+    }
+
+    @Test
+    public void sendMessage_onLoopbackTransports() throws Exception {
+        LoopbackTransport watchTransport = new LoopbackTransport("watch");
+        LoopbackTransport phoneTransport = new LoopbackTransport("phone");
+        BlockingQueue<String> receivedMessages = new LinkedBlockingQueue<>();
+        phoneTransport.setMessageListener(getMessageListener(receivedMessages));
+        assertFalse(watchTransport.isReachable("phone"));
+
+        LoopbackTransport.connect(watchTransport, phoneTransport);
+        assertTrue(watchTransport.isReachable("phone"));
+        assertEquals("[watch]", phoneTransport.getNearbyNodeIds().toString());
+
+        watchTransport.sendMessage("/ping", "1".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), "phone");
+        assertEquals("watch/ping1", receivedMessages.poll());
+    }
+
+    @Test
+    public void sendMessage_onTcpTransports() throws Exception {
+        TcpTransport watchTransport = new TcpTransport();
+        TcpTransport phoneTransport = new TcpTransport();
+        BlockingQueue<String> receivedWatchMessages = new LinkedBlockingQueue<>();
+        BlockingQueue<String> receivedPhoneMessages = new LinkedBlockingQueue<>();
+        watchTransport.setMessageListener(getMessageListener(receivedWatchMessages));
+        phoneTransport.setMessageListener(getMessageListener(receivedPhoneMessages));
+        watchTransport.start();
+        phoneTransport.start();
+
+        try {
+            String watchNodeId = watchTransport.getLocalNodeId();
+            String phoneNodeId = phoneTransport.getLocalNodeId();
+            phoneTransport.sendMessage("/request", "a".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), watchNodeId);
+            phoneTransport.sendMessage("/request", "b".getBytes(GoogleApiMessenger.DEFAULT_CHARSET), watchNodeId);
+            assertEquals(phoneNodeId + "/requesta", receivedWatchMessages.poll(1, TimeUnit.SECONDS));
+            assertEquals(phoneNodeId + "/requestb", receivedWatchMessages.poll(1, TimeUnit.SECONDS));
+
+            // the sender has been discovered and can be replied to
+            assertTrue(watchTransport.getNearbyNodeIds().contains(phoneNodeId));
+            watchTransport.sendMessage("/response", new byte[0], phoneNodeId);
+            assertEquals(watchNodeId + "/response", receivedPhoneMessages.poll(1, TimeUnit.SECONDS));
+        } finally {
+            watchTransport.stop();
+            phoneTransport.stop();
+        }
+    }
+
+    @Test
+    public void isReachable_onFailedConnection() throws Exception {
+        TcpTransport transport = new TcpTransport();
+        ServerSocket closedServerSocket = new ServerSocket(0, 0, InetAddress.getByName(TcpTransport.HOST_DEFAULT));
+        String closedNodeId = TcpTransport.getNodeId(TcpTransport.HOST_DEFAULT, closedServerSocket.getLocalPort());
+        closedServerSocket.close();
+
+        transport.addNode(closedNodeId);
+        assertTrue(transport.isReachable(closedNodeId));
+        try {
+            transport.sendMessage("/ping", new byte[0], closedNodeId);
+            fail("Sending to a closed port should fail");
+        } catch (IOException ex) {
+            assertFalse(transport.isReachable(closedNodeId));
+            assertFalse(transport.getNearbyNodeIds().contains(closedNodeId));
+        }
+    }
+
+}
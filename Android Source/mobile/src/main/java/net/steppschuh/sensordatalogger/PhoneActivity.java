@@ -24,8 +24,10 @@ import android.widget.TextView;
 
 import net.steppschuh.datalogger.data.DataBatch;
 import net.steppschuh.datalogger.data.DataChangedListener;
+import net.steppschuh.datalogger.data.SessionSchema;
 import net.steppschuh.datalogger.data.request.DataRequest;
 import net.steppschuh.datalogger.data.request.DataRequestResponse;
+import net.steppschuh.datalogger.data.request.LazyDataRequestResponse;
 import net.steppschuh.datalogger.data.request.SensorDataRequest;
 import net.steppschuh.datalogger.logging.TimeTracker;
 import net.steppschuh.datalogger.messaging.ReachabilityChecker;
@@ -40,10 +42,12 @@ import net.steppschuh.sensordatalogger.ui.SensorSelectionDialogFragment;
 import net.steppschuh.sensordatalogger.ui.visualization.VisualizationCardData;
 import net.steppschuh.sensordatalogger.ui.visualization.VisualizationCardListAdapter;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class PhoneActivity extends AppCompatActivity implements DataChangedListener, ReachabilityChecker.NodeReachabilityUpdateReceiver, SensorSelectionDialogFragment.SelectedSensorsUpdatedListener {
@@ -65,11 +69,12 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
     private VisualizationCardListAdapter cardListAdapter;
     private SensorSelectionDialogFragment sensorSelectionDialog;
 
-    private Map<String, SensorDataRequest> sensorDataRequests = new HashMap<>();
-    private Map<String, List<DeviceSensor>> selectedSensors = new HashMap<>();
+    private volatile Map<String, SensorDataRequest> sensorDataRequests = new ConcurrentHashMap<>();
+    private volatile Map<String, List<DeviceSensor>> selectedSensors = new ConcurrentHashMap<>();
     private Map<String, AlertDialog> reachabilityDialogs = new HashMap<>();
+    private Map<String, SessionSchema> sessionSchemas = new ConcurrentHashMap<>();
 
-    private String lastResponseStatus;
+    private volatile String lastResponseStatus;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -129,6 +134,7 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
         messageHandlers = new ArrayList<>();
         messageHandlers.add(getSetStatusMessageHandler());
         messageHandlers.add(getSensorDataRequestResponseMessageHandler());
+        messageHandlers.add(getSensorDataSchemaMessageHandler());
     }
 
     private void setupStatusUpdates() {
@@ -188,15 +194,15 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         try {
             // restore sensor data requests
-            sensorDataRequests = (HashMap) savedInstanceState.getSerializable(KEY_SENSOR_DATA_REQUESTS);
-            if (sensorDataRequests == null) {
-                sensorDataRequests = new HashMap<>();
+            HashMap restoredSensorDataRequests = (HashMap) savedInstanceState.getSerializable(KEY_SENSOR_DATA_REQUESTS);
+            if (restoredSensorDataRequests != null) {
+                sensorDataRequests = new ConcurrentHashMap<String, SensorDataRequest>(restoredSensorDataRequests);
             }
 
             // restore selected sensors
-            selectedSensors = (HashMap) savedInstanceState.getSerializable(KEY_SELECTED_SENSORS);
-            if (selectedSensors == null) {
-                selectedSensors = new HashMap<>();
+            HashMap restoredSelectedSensors = (HashMap) savedInstanceState.getSerializable(KEY_SELECTED_SENSORS);
+            if (restoredSelectedSensors != null) {
+                selectedSensors = new ConcurrentHashMap<String, List<DeviceSensor>>(restoredSelectedSensors);
             }
             Log.d(TAG, "Instance state restored");
 
@@ -222,8 +228,8 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
 
     @Override
     protected void onSaveInstanceState(Bundle outState) {
-        outState.putSerializable(KEY_SENSOR_DATA_REQUESTS, (HashMap) sensorDataRequests);
-        outState.putSerializable(KEY_SELECTED_SENSORS, (HashMap) selectedSensors);
+        outState.putSerializable(KEY_SENSOR_DATA_REQUESTS, new HashMap<>(sensorDataRequests));
+        outState.putSerializable(KEY_SELECTED_SENSORS, new HashMap<>(selectedSensors));
         Log.d(TAG, "Saved instance state");
         super.onSaveInstanceState(outState);
     }
@@ -236,7 +242,7 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
         for (MessageHandler messageHandler : messageHandlers) {
             app.registerMessageHandler(messageHandler);
         }
-        Wearable.MessageApi.addListener(app.getGoogleApiMessenger().getGoogleApiClient(), app);
+        Wearable.MessageApi.addListener(app.getGoogleApiMessenger().getGoogleApiClient(), app.getGoogleApiMessenger());
 
         // register reachability callback
         app.getReachabilityChecker().registerReachabilityUpdateReceiver(ReachabilityChecker.NODE_ID_ANY, this);
@@ -272,7 +278,7 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
         for (MessageHandler messageHandler : messageHandlers) {
             app.unregisterMessageHandler(messageHandler);
         }
-        Wearable.MessageApi.removeListener(app.getGoogleApiMessenger().getGoogleApiClient(), app);
+        Wearable.MessageApi.removeListener(app.getGoogleApiMessenger().getGoogleApiClient(), app.getGoogleApiMessenger());
 
         // update status
         status.setInForeground(false);
@@ -331,6 +337,35 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
         renderDataBatch(dataBatch, sourceNodeId);
     }
 
+    /**
+     * Replaces the source id of the specified @DataBatch with the source name,
+     * based on the @SessionSchema that has been received from the node.
+     * Falls back to the selected sensors if the schema isn't available yet.
+     */
+    private void resolveDataBatchSource(DataBatch dataBatch, String sourceNodeId, long sessionId) {
+        if (dataBatch.getSource() != null) {
+            return;
+        }
+
+        SessionSchema sessionSchema = sessionSchemas.get(sourceNodeId);
+        if (sessionSchema != null && sessionSchema.getSessionId() == sessionId) {
+            if (sessionSchema.resolveSource(dataBatch)) {
+                return;
+            }
+        }
+
+        List<DeviceSensor> deviceSensors = selectedSensors.get(sourceNodeId);
+        if (deviceSensors == null) {
+            return;
+        }
+        for (DeviceSensor deviceSensor : deviceSensors) {
+            if (deviceSensor.getType() == dataBatch.getType()) {
+                dataBatch.setSource(deviceSensor.getName());
+                return;
+            }
+        }
+    }
+
     /*
      * Message Handlers
      */
@@ -339,9 +374,31 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
             @Override
             public void handleMessage(Message message) {
                 String sourceNodeId = MessageHandler.getSourceNodeIdFromMessage(message);
-                String statusJson = MessageHandler.getDataFromMessageAsString(message);
+                final String statusJson = MessageHandler.getDataFromMessageAsString(message);
                 Log.d(TAG, "Received status from: " + sourceNodeId + ": " + statusJson);
-                logTextView.setText(statusJson);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        logTextView.setText(statusJson);
+                    }
+                });
+            }
+        };
+    }
+
+    private MessageHandler getSensorDataSchemaMessageHandler() {
+        return new SinglePathMessageHandler(MessageHandler.PATH_SENSOR_DATA_SCHEMA) {
+            @Override
+            public void handleMessage(Message message) {
+                String sourceNodeId = MessageHandler.getSourceNodeIdFromMessage(message);
+                String sessionSchemaJson = MessageHandler.getDataFromMessageAsString(message);
+                SessionSchema sessionSchema = SessionSchema.fromJson(sessionSchemaJson);
+                if (sessionSchema == null) {
+                    Log.w(TAG, "Unable to parse session schema from " + sourceNodeId);
+                    return;
+                }
+                Log.d(TAG, "Received session schema from " + sourceNodeId + ": " + sessionSchemaJson);
+                sessionSchemas.put(sourceNodeId, sessionSchema);
             }
         };
     }
@@ -349,48 +406,72 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
     private MessageHandler getSensorDataRequestResponseMessageHandler() {
         return new SinglePathMessageHandler(MessageHandler.PATH_SENSOR_DATA_REQUEST_RESPONSE) {
             @Override
-            public void handleMessage(final Message message) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
+            public void handleMessage(Message message) {
+                try {
+                    // parse response data
+                    final String sourceNodeId = MessageHandler.getSourceNodeIdFromMessage(message);
+                    final ByteBuffer responseData = MessageHandler.getDataBufferFromMessage(message);
+                    final LazyDataRequestResponse response = LazyDataRequestResponse.decode(responseData);
+
+                    if (response.getBatchCount() > 0) {
+                        long transmissionDuration = System.currentTimeMillis() - response.getEndTimestamp();
+                        TimeTracker tracker = app.getTrackerManager().getTracker("renderDataBatch");
+                        tracker.addDuration(TimeUnit.MILLISECONDS.toNanos(transmissionDuration));
+
+                        StringBuilder sb = new StringBuilder();
+                        sb.append("First data batch items: ");
+                        sb.append(response.getSampleCount(0));
+                        sb.append(" / ");
+                        sb.append(response.getDataBatch(0).getCapacity());
+
+                        sb.append("\nSerialized bytes: ");
+                        sb.append(responseData.remaining());
+
+                        if (response.getDroppedDataCount() > 0) {
+                            sb.append("\nDropped samples: ");
+                            sb.append(response.getDroppedDataCount());
+                        }
+
+                        if (response.getUpdateInterval() != DataRequestResponse.UPDATE_INTERVAL_NOT_SET) {
+                            sb.append("\nUpdate interval: ");
+                            sb.append(response.getUpdateInterval());
+                            sb.append("ms");
+                        }
+
+                        lastResponseStatus = sb.toString();
+                    }
+
+                    // only batches that are still requested need to be decoded
+                    final List<DataBatch> decodedDataBatches = new ArrayList<>(response.getBatchCount());
+                    for (int batchIndex = 0; batchIndex < response.getBatchCount(); batchIndex++) {
                         try {
-                            // parse response data
-                            final String sourceNodeId = MessageHandler.getSourceNodeIdFromMessage(message);
-                            final String responseJson = MessageHandler.getDataFromMessageAsString(message);
-                            final DataRequestResponse response = DataRequestResponse.fromJson(responseJson);
-
-                            if (response.getDataBatches().size() > 0) {
-                                long transmissionDuration = System.currentTimeMillis() - response.getEndTimestamp();
-                                TimeTracker tracker = app.getTrackerManager().getTracker("renderDataBatch");
-                                tracker.addDuration(TimeUnit.MILLISECONDS.toNanos(transmissionDuration));
-
-                                StringBuilder sb = new StringBuilder();
-                                sb.append("First data batch items: ");
-                                sb.append(response.getDataBatches().get(0).getDataList().size());
-                                sb.append(" / ");
-                                sb.append(response.getDataBatches().get(0).getCapacity());
-
-                                sb.append("\nSerialized bytes: ");
-                                sb.append(responseJson.getBytes().length);
-
-                                lastResponseStatus = sb.toString();
+                            DataBatch dataBatch = response.getDataBatch(batchIndex);
+                            resolveDataBatchSource(dataBatch, sourceNodeId, response.getSessionId());
+                            if (!isRequestingSensorEventData(sourceNodeId, dataBatch.getSource())) {
+                                continue;
                             }
-
-                            // render data in UI thread
-                            Runnable notifyDataChangedRunnable = new Runnable() {
-                                @Override
-                                public void run() {
-                                    for (DataBatch dataBatch : response.getDataBatches()) {
-                                        onDataChanged(dataBatch, sourceNodeId);
-                                    }
-                                }
-                            };
-                            new Handler(Looper.getMainLooper()).post(notifyDataChangedRunnable);
+                            decodedDataBatches.add(response.decodeDataBatch(batchIndex));
                         } catch (Exception ex) {
-                            ex.printStackTrace();
+                            Log.w(TAG, "Unable to decode data batch: " + ex.getMessage());
                         }
                     }
-                }).start();
+                    if (decodedDataBatches.isEmpty()) {
+                        return;
+                    }
+
+                    // render data in UI thread
+                    Runnable notifyDataChangedRunnable = new Runnable() {
+                        @Override
+                        public void run() {
+                            for (DataBatch dataBatch : decodedDataBatches) {
+                                onDataChanged(dataBatch, sourceNodeId);
+                            }
+                        }
+                    };
+                    new Handler(Looper.getMainLooper()).post(notifyDataChangedRunnable);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
             }
         };
     }
@@ -601,10 +682,15 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
             DataBatch visualizationDataBatch = visualizationCardData.getDataBatch();
             if (visualizationDataBatch == null) {
                 visualizationDataBatch = dataBatch;
-                visualizationDataBatch.setCapacity(DataBatch.CAPACITY_UNLIMITED);
+                visualizationDataBatch.setCapacity(DataBatch.CAPACITY_DEFAULT);
+                visualizationDataBatch.setRollupEnabled(true);
                 visualizationCardData.setDataBatch(visualizationDataBatch);
+
+                // the capacity will grow within the memory budget. Batches are
+                // modified and rebalanced on the main thread, no handler needed
+                app.getMemoryBudget().register(visualizationDataBatch, null);
             } else {
-                visualizationDataBatch.addData(dataBatch.getDataList());
+                visualizationDataBatch.addData(dataBatch);
             }
 
             cardListAdapter.invalidateVisualization(visualizationCardData.getKey());
@@ -635,6 +721,7 @@ public class PhoneActivity extends AppCompatActivity implements DataChangedListe
 
         for (Map.Entry<String, VisualizationCardData> visualizationCardDataEntry : removableVisualizationCards.entrySet()) {
             Log.d(TAG, "Removing unneeded visualization card: " + visualizationCardDataEntry.getValue().getHeading());
+            app.getMemoryBudget().unregister(visualizationCardDataEntry.getValue().getDataBatch());
             cardListAdapter.remove(visualizationCardDataEntry.getValue());
         }
     }
@@ -83,7 +83,7 @@ public class VisualizationCardView extends RelativeLayout {
             @Override
             public void onClick(View v) {
                 int current = chartView.getCurrentDataDimension();
-                int breakIndex = data.getDataBatch().getNewestData().getValues().length - 1;
+                int breakIndex = data.getDataBatch().getDimensions() - 1;
                 if (current == breakIndex && chartView.getDataDimension() != ChartView.DATA_DIMENSION_ALL) {
                     chartView.setDataDimension(ChartView.DATA_DIMENSION_ALL);
                 } else {
@@ -112,7 +112,7 @@ public class VisualizationCardView extends RelativeLayout {
             headingTextView.setText(data.getHeading());
             subHeadingTextView.setText(data.getSubHeading());
 
-            if (data.getDataBatch().getNewestData() == null) {
+            if (data.getDataBatch().getSize() == 0) {
                 return;
             }
 
@@ -130,7 +130,7 @@ public class VisualizationCardView extends RelativeLayout {
                 valueRightTextView.setText(latestReadableValues[chartView.getNextDataDimension()]);
                 valueLeftTextView.setText(latestReadableValues[chartView.getPreviousDataDimension()]);
             } else {
-                String readableFrequency = String.format(Locale.US, "%.0f%s", data.getDataBatch().getFrequency(), " Hz");
+                String readableFrequency = String.format(Locale.US, "%.0f%s", data.getDataBatch().getStatistics().getFrequency(), " Hz");
                 valueCenterTextView.setText(readableFrequency);
                 valueRightTextView.setText(ChartView.getDimensionName(chartView.getNextDataDimension()));
                 valueLeftTextView.setText(ChartView.getDimensionName(chartView.getPreviousDataDimension()));
@@ -139,13 +139,20 @@ public class VisualizationCardView extends RelativeLayout {
             ex.printStackTrace();
         }
 
+        if (renderRollupData()) {
+            return;
+        }
+
         new Thread(new Runnable() {
             @Override
             public void run() {
                 try {
                     long minimumTimestamp = chartView.getStartTimestamp() - TimeUnit.SECONDS.toMillis(1);
-                    DataBatch processedDataBatch = new DataBatch(data.getDataBatch());
-                    List<Data> processedData = getProcessedDataList(data.getDataBatch().getDataSince(minimumTimestamp));
+                    DataBatch dataBatch = data.getDataBatch().snapshot();
+                    DataBatch processedDataBatch = new DataBatch(dataBatch.getSource());
+                    processedDataBatch.setType(dataBatch.getType());
+                    processedDataBatch.setCapacity(dataBatch.getCapacity());
+                    List<Data> processedData = getProcessedDataList(dataBatch.getDataSince(minimumTimestamp));
                     processedDataBatch.setDataList(processedData);
                     chartView.setDataBatch(processedDataBatch);
                 } catch (Exception ex) {
@@ -155,6 +162,30 @@ public class VisualizationCardView extends RelativeLayout {
         }).start();
     }
 
+    /**
+     * Renders the rollup buckets instead of the raw samples if the visible
+     * time range contains more samples than the chart has pixels. Needs to be
+     * called on the main thread, which is the thread that modifies the batch.
+     */
+    private boolean renderRollupData() {
+        long startTimestamp = chartView.getStartTimestamp();
+        long endTimestamp = chartView.getEndTimestamp();
+        if (startTimestamp == ChartView.TIMESTAMP_NOT_SET || chartView.getWidth() == 0) {
+            return false;
+        }
+
+        DataBatch dataBatch = data.getDataBatch();
+        DataBatch rollupDataBatch = dataBatch.getRollupDataBetween(startTimestamp, endTimestamp, chartView.getWidth());
+        if (rollupDataBatch == null) {
+            return false;
+        }
+        if (rollupDataBatch.getSize() >= dataBatch.getViewBetween(startTimestamp, endTimestamp).getSize()) {
+            return false;
+        }
+        chartView.setDataBatch(rollupDataBatch);
+        return true;
+    }
+
     public static List<Data> getProcessedDataList(List<Data> unprocessedData) {
         List<Data> processedData = new ArrayList<>();
 
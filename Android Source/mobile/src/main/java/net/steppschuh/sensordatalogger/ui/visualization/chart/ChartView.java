@@ -236,7 +236,7 @@ public abstract class ChartView extends View {
         if (renderTimeTracker.getTrackingCount() >= 100) {
             long averageRenderingDuration = TimeUnit.NANOSECONDS.toMillis(renderTimeTracker.calculateAverageDuration());
             if (averageRenderingDuration > 3 && dataBatch != null) {
-                Log.w(TAG, "Chart rendering for " + dataBatch.getDataList().size() + " data points took " + averageRenderingDuration + "ms!");
+                Log.w(TAG, "Chart rendering for " + dataBatch.getSize() + " data points took " + averageRenderingDuration + "ms!");
             }
             renderTimeTracker = new TimeTracker("Chart Rendering");
         }
@@ -274,12 +274,12 @@ public abstract class ChartView extends View {
     }
 
     public String getCurrentDimensionName() {
-        if (dataBatch == null || dataBatch.getNewestData() == null) {
+        if (dataBatch == null || dataBatch.getSize() == 0) {
             return "?";
         }
         if (dataDimension == DATA_DIMENSION_ALL) {
             StringBuilder sb = new StringBuilder();
-            int dimensionCount = dataBatch.getNewestData().getValues().length;
+            int dimensionCount = dataBatch.getDimensions();
             for (int dimension = 0; dimension < dimensionCount; dimension++) {
                 sb.append(getDimensionName(dimension));
                 if (dimension < dimensionCount - 1) {
@@ -371,26 +371,26 @@ public abstract class ChartView extends View {
     }
 
     public int getNextDataDimension() {
-        if (dataBatch == null || dataBatch.getNewestData() == null) {
+        if (dataBatch == null || dataBatch.getSize() == 0) {
             return 0;
         }
         if (dataDimension == DATA_DIMENSION_ALL) {
             return 0;
         } else {
-            return (getCurrentDataDimension() + 1) % dataBatch.getNewestData().getValues().length;
+            return (getCurrentDataDimension() + 1) % dataBatch.getDimensions();
         }
     }
 
     public int getPreviousDataDimension() {
-        if (dataBatch == null || dataBatch.getNewestData() == null) {
+        if (dataBatch == null || dataBatch.getSize() == 0) {
             return 0;
         }
         if (dataDimension == DATA_DIMENSION_ALL) {
-            return dataBatch.getNewestData().getValues().length - 1;
+            return dataBatch.getDimensions() - 1;
         } else {
-            int previousIndex = (getCurrentDataDimension() - 1) % dataBatch.getNewestData().getValues().length;
+            int previousIndex = (getCurrentDataDimension() - 1) % dataBatch.getDimensions();
             if (previousIndex < 0) {
-                previousIndex += dataBatch.getNewestData().getValues().length;
+                previousIndex += dataBatch.getDimensions();
             }
             return previousIndex;
         }
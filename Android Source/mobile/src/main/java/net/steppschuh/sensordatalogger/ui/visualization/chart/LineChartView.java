@@ -12,7 +12,7 @@ import android.graphics.Shader;
 import android.util.AttributeSet;
 import android.util.Log;
 
-import net.steppschuh.datalogger.data.Data;
+import net.steppschuh.datalogger.data.DataStatistics;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -179,8 +179,9 @@ public class LineChartView extends ChartView {
             if (dataBatch == null) {
                 return;
             }
-            Data newestData = dataBatch.getNewestData();
-            if (newestData == null) {
+            int dataCount = dataBatch.getSize();
+            int dimensionCount = dataBatch.getDimensions();
+            if (dataCount == 0) {
                 return;
             }
 
@@ -196,45 +197,57 @@ public class LineChartView extends ChartView {
 
             // prepare data paths for each dimension
             dataPaths = new HashMap<>();
-            for (int dimension = 0; dimension < newestData.getValues().length; dimension++) {
+            for (int dimension = 0; dimension < dimensionCount; dimension++) {
                 dataPaths.put(dimension, new Path());
             }
 
+            // skip data that is older than the visible range, except for
+            // the last data point before it (so that the path starts off-screen)
+            int firstDataIndex = Math.max(0, dataBatch.indexOfFirstAfter(startTimestamp) - 1);
+
             // add values from each dimension to path
-            for (int dataIndex = 0; dataIndex < dataBatch.getDataList().size(); dataIndex++) {
+            for (int dataIndex = firstDataIndex; dataIndex < dataCount; dataIndex++) {
                 try {
-                    Data data = dataBatch.getDataList().get(dataIndex);
-                    float x = getMappedHorizontalPosition(data.getTimestamp());
+                    float x = getMappedHorizontalPosition(dataBatch.getTimestamp(dataIndex));
 
-                    for (int dimension = 0; dimension < data.getValues().length; dimension++) {
+                    for (int dimension = 0; dimension < dimensionCount; dimension++) {
                         if (!shouldRenderDimension(dimension)) {
                             continue;
                         }
-                        float value = data.getValues()[dimension];
-                        currentMinimumValue = Math.min(currentMinimumValue, value);
-                        currentMaximumValue = Math.max(currentMaximumValue, value);
+                        float value = dataBatch.getValue(dataIndex, dimension);
                         float y = getMappedVerticalPosition(value);
 
                         // add data point to path
-                        if (dataIndex == 0) {
+                        if (dataIndex == firstDataIndex) {
                             dataPaths.get(dimension).moveTo(x, y);
                         } else {
                             dataPaths.get(dimension).lineTo(x, y);
                         }
                     }
                 } catch (Exception ex) {
-                    Log.v(TAG, "Unable to render data point: " + dataBatch.getDataList().get(dataIndex));
+                    Log.v(TAG, "Unable to render data point: " + dataBatch.getData(dataIndex));
+                }
+            }
+
+            // get minimum & maximum values from the streaming statistics
+            DataStatistics statistics = dataBatch.getStatistics();
+            for (int dimension = 0; dimension < dimensionCount; dimension++) {
+                if (!shouldRenderDimension(dimension)) {
+                    continue;
                 }
+                currentMinimumValue = Math.min(currentMinimumValue, statistics.getMinimum(dimension));
+                currentMaximumValue = Math.max(currentMaximumValue, statistics.getMaximum(dimension));
             }
 
-            float newestX = getMappedHorizontalPosition(newestData.getTimestamp());
+            int newestIndex = dataCount - 1;
+            float newestX = getMappedHorizontalPosition(dataBatch.getTimestamp(newestIndex));
             float fadeOverlayWidth = paddedWidth * fadePercentage;
             Paint dataPathPaint = new Paint(dataStrokePaint);
             Shader fadeOutShader;
 
             // iterate over dimensions and draw data paths, as well as highlights
             // for the newest values
-            for (int dimension = newestData.getValues().length - 1; dimension >= 0; dimension--) {
+            for (int dimension = dimensionCount - 1; dimension >= 0; dimension--) {
                 if (!shouldRenderDimension(dimension)) {
                     continue;
                 }
@@ -249,7 +262,7 @@ public class LineChartView extends ChartView {
                 // draw starting points
                 Paint dataPointPaint = new Paint(dataFillPaint);
                 dataPointPaint.setColor(dimensionColors[dimension]);
-                float newestY = getMappedVerticalPosition(newestData.getValues()[dimension]);
+                float newestY = getMappedVerticalPosition(dataBatch.getValue(newestIndex, dimension));
                 canvas.drawCircle(newestX, newestY, 10, dataPointPaint);
             }
 
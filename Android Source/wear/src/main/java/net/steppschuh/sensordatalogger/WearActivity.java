@@ -62,6 +62,7 @@ public class WearActivity extends WearableActivity implements StatusUpdateEmitte
         // initialize with context activity if needed
         if (!app.getStatus().isInitialized() || app.getContextActivity() == null) {
             app.initialize(this);
+            app.getSensorDataManager().setAllocationTrackingEnabled(BuildConfig.TRACK_ALLOCATIONS);
         }
 
         setupUi();
@@ -128,7 +129,7 @@ public class WearActivity extends WearableActivity implements StatusUpdateEmitte
         for (MessageHandler messageHandler : messageHandlers) {
             app.registerMessageHandler(messageHandler);
         }
-        Wearable.MessageApi.addListener(app.getGoogleApiMessenger().getGoogleApiClient(), app);
+        Wearable.MessageApi.addListener(app.getGoogleApiMessenger().getGoogleApiClient(), app.getGoogleApiMessenger());
 
         // update status
         status.setInForeground(true);
@@ -147,7 +148,7 @@ public class WearActivity extends WearableActivity implements StatusUpdateEmitte
         for (MessageHandler messageHandler : messageHandlers) {
             app.unregisterMessageHandler(messageHandler);
         }
-        Wearable.MessageApi.removeListener(app.getGoogleApiMessenger().getGoogleApiClient(), app);
+        Wearable.MessageApi.removeListener(app.getGoogleApiMessenger().getGoogleApiClient(), app.getGoogleApiMessenger());
 
         // update status
         status.setInForeground(false);
@@ -282,8 +283,13 @@ public class WearActivity extends WearableActivity implements StatusUpdateEmitte
                     lastConnectedDeviceName = app.getGoogleApiMessenger().getNodeName(sensorDataRequest.getSourceNodeId());
                 }
 
-                updateStatusTexts();
-                logTextView.setText(String.valueOf(System.currentTimeMillis()));
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateStatusTexts();
+                        logTextView.setText(String.valueOf(System.currentTimeMillis()));
+                    }
+                });
             }
         };
     }